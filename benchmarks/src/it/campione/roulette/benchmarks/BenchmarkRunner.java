@@ -0,0 +1,28 @@
+package it.campione.roulette.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all the benchmarks and writes the results as JSON, so that the runs of
+ * different versions can be compared. The first argument is the result file
+ * ("jmh-result.json" by default), the optional second one a regular expression
+ * of the benchmarks to run.
+ *
+ * @author D. Campione
+ *
+ */
+public class BenchmarkRunner {
+
+    public static void main(String... args) throws RunnerException {
+        String resultFile = args.length > 0 ? args[0] : "jmh-result.json";
+        String include = args.length > 1 ? args[1] : BenchmarkRunner.class.getPackage().getName() + ".*";
+
+        Options options = new OptionsBuilder().include(include).resultFormat(ResultFormatType.JSON)
+                .result(resultFile).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,87 @@
+package it.campione.roulette.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.campione.roulette.CompiledSeries;
+import it.campione.roulette.RandomAlgorithm;
+import it.campione.roulette.Roulette;
+import it.campione.roulette.SeriesBatchEvaluator;
+
+/**
+ * Evaluation of a batch of series of the shipped "serie.txt" layout, on
+ * numbers drawn beforehand, by the scalar and by the vectorized
+ * {@link SeriesBatchEvaluator}: the "spins" counter is the throughput in rows
+ * evaluated per microsecond. The vectorized evaluator needs its classes from
+ * the vector folder on the classpath; the forked JVM adds the
+ * jdk.incubator.vector module.
+ *
+ * @author D. Campione
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class EvaluatorBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param({ "scalar", "vector" })
+    private String evaluator;
+
+    @Param({ "0", "3" })
+    private int retryCount;
+
+    private SeriesBatchEvaluator batch;
+    private int rowCount;
+
+    /**
+     * Rows evaluated, reported per unit of time.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+
+        public long spins;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            spins = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        CompiledSeries series = CompiledSeries.compile(Layouts.shippedSeries());
+        rowCount = series.getRowCount();
+        batch = "vector".equals(evaluator) ? SeriesBatchEvaluator.create(series, retryCount, BATCH)
+                : SeriesBatchEvaluator.scalar(series, retryCount, BATCH);
+        if ("vector".equals(evaluator) && !batch.isVectorized()) {
+            throw new IllegalStateException("The vectorized evaluator is not on the classpath");
+        }
+        batch.draw(new Roulette(RandomAlgorithm.SPLITTABLE.create(42)), BATCH);
+    }
+
+    @Benchmark
+    public int evaluate(Counters counters) {
+        batch.evaluate(BATCH);
+        counters.spins += (long) BATCH * rowCount;
+        return batch.getDots(BATCH - 1);
+    }
+}
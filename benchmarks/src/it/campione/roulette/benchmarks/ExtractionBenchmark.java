@@ -0,0 +1,66 @@
+package it.campione.roulette.benchmarks;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.campione.roulette.Bet;
+import it.campione.roulette.Messages;
+import it.campione.roulette.RandomAlgorithm;
+import it.campione.roulette.Roulette;
+import it.campione.roulette.SimulationEngine;
+import it.campione.roulette.SimulationReport;
+import it.campione.roulette.SimulationResult;
+
+/**
+ * The extraction as the application runs it: the sequential engine with the
+ * full result grid, and the generation of the textual report.
+ *
+ * @author D. Campione
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractionBenchmark {
+
+    @Param({ "1", "100" })
+    private int seriesCount;
+
+    private List<Bet> bets;
+    private SimulationEngine engine;
+    private SimulationResult result;
+
+    @Setup
+    public void setUp() {
+        Messages.setLocale(new Locale("en", "US"));
+        bets = Layouts.shippedSeries();
+        engine = new SimulationEngine(new Roulette(RandomAlgorithm.SPLITTABLE.create(42)));
+        result = engine.run(bets, 1, seriesCount, 1, 0);
+    }
+
+    @Benchmark
+    public SimulationResult extraction() {
+        return engine.run(bets, 1, seriesCount, 1, 0);
+    }
+
+    @Benchmark
+    public String report() {
+        return SimulationReport.format(result);
+    }
+}
@@ -0,0 +1,32 @@
+package it.campione.roulette.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import it.campione.roulette.Bet;
+import it.campione.roulette.SeriesFile;
+
+/**
+ * Loads the series layout used by the benchmarks: the shipped "serie.txt", or
+ * the file given by the "roulette.series" system property.
+ *
+ * @author D. Campione
+ *
+ */
+final class Layouts {
+
+    private Layouts() {
+    }
+
+    static List<Bet> shippedSeries() {
+        Path path = Paths.get(System.getProperty("roulette.series", "serie.txt"));
+        try {
+            return SeriesFile.read(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
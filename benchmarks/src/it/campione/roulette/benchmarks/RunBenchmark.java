@@ -0,0 +1,60 @@
+package it.campione.roulette.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.campione.roulette.Bet;
+import it.campione.roulette.ParallelSimulationEngine;
+import it.campione.roulette.SeriesStatistics;
+
+/**
+ * Full multi-series runs of the shipped layout on the
+ * {@link ParallelSimulationEngine}, with all the available cores.
+ *
+ * @author D. Campione
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RunBenchmark {
+
+    @Param({ "1", "100", "1000000" })
+    private long seriesCount;
+
+    private List<Bet> bets;
+    private ParallelSimulationEngine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bets = Layouts.shippedSeries();
+        engine = new ParallelSimulationEngine(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public SeriesStatistics parallelRun() {
+        return engine.run(bets, 1, seriesCount, 1, 42);
+    }
+}
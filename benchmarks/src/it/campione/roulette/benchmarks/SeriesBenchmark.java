@@ -0,0 +1,79 @@
+package it.campione.roulette.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import it.campione.roulette.Bet;
+import it.campione.roulette.CompiledSeries;
+import it.campione.roulette.RandomAlgorithm;
+import it.campione.roulette.Roulette;
+import it.campione.roulette.SeriesPlayer;
+
+/**
+ * Time to play one series of the shipped "serie.txt" layout: with the
+ * {@link Bet} objects, as the extraction did originally, and with the
+ * {@link SeriesPlayer} on the compiled masks.
+ *
+ * @author D. Campione
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeriesBenchmark {
+
+    @Param({ "0", "1", "3" })
+    private int retryCount;
+
+    private Bet[] bets;
+    private Roulette roulette;
+    private SeriesPlayer player;
+
+    @Setup
+    public void setUp() {
+        List<Bet> layout = Layouts.shippedSeries();
+        bets = layout.toArray(new Bet[0]);
+        roulette = new Roulette(RandomAlgorithm.SPLITTABLE.create(42));
+        player = new SeriesPlayer(CompiledSeries.compile(layout), retryCount, 1);
+    }
+
+    @Benchmark
+    public int betObjects() {
+        int failuresCount = 0;
+        int profit = 0;
+        for (Bet bet : bets) {
+            int result = roulette.spin();
+            if (failuresCount > retryCount || bet.shouldIgnore()) {
+                continue;
+            }
+            if (bet.isWinningNumber(result)) {
+                profit += 1;
+            } else {
+                failuresCount++;
+                profit -= 35;
+            }
+        }
+        return profit;
+    }
+
+    @Benchmark
+    public int compiledSeries() {
+        player.play(roulette);
+        return player.getProfit();
+    }
+}
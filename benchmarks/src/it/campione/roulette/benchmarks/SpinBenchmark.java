@@ -0,0 +1,67 @@
+package it.campione.roulette.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import it.campione.roulette.RandomAlgorithm;
+import it.campione.roulette.Roulette;
+
+/**
+ * Throughput of {@link Roulette#spin()} and of the batched
+ * {@link Roulette#spin(int[])} for every random algorithm, in spins per
+ * microsecond. The RANDOM algorithm with the single spin is the original
+ * implementation.
+ *
+ * @author D. Campione
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpinBenchmark {
+
+    private static final int BATCH = 1024;
+
+    @Param({ "RANDOM", "SPLITTABLE", "L64X128", "XOSHIRO256" })
+    private RandomAlgorithm algorithm;
+
+    private Roulette roulette;
+    private int[] numbers;
+
+    @Setup
+    public void setUp() {
+        roulette = new Roulette(algorithm.create(42));
+        numbers = new int[BATCH];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void spin(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(roulette.spin());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int[] spinBatched() {
+        roulette.spin(numbers);
+        return numbers;
+    }
+}
@@ -0,0 +1,265 @@
+package it.campione.roulette;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bankroll mode of the simulation: every trial starts with the same capital
+ * and plays the series one after the other, row by row, until the capital no
+ * longer covers a bet (ruin), the gain reaches the target, or the horizon of
+ * series is over. The rows are played as in the application (a win pays the
+ * bet unit, a loss costs 35 times it, the rows after the last retry are not
+ * bet), and a trial stops drawing numbers as soon as its end is known: at the
+ * ruin or at the target, even in the middle of a series, and at the start of
+ * any series after which the target can no longer be reached, even winning
+ * every remaining row. Such a trial is counted as given up and its ruin, if
+ * any, is not waited for, so with a target the ruin probability is the one of
+ * a player who gives up a hopeless session.
+ * <p>
+ * The trials are played on the pool of a {@link ParallelSimulationEngine}, in
+ * chunks whose random numbers depend only on the seed and on the chunk index,
+ * so a seeded run gives the same statistics with any number of threads.
+ *
+ * @author D. Campione
+ *
+ */
+public class BankrollSimulation {
+
+    /** Number of trials played by a single fork-join leaf task. */
+    static final int TRIAL_CHUNK_SIZE = 64;
+
+    private final ParallelSimulationEngine engine;
+
+    public BankrollSimulation(ParallelSimulationEngine engine) {
+        this.engine = engine;
+    }
+
+    public BankrollStatistics run(SimulationParameters parameters, long bankroll, long targetProfit, long trials) {
+        return run(parameters, bankroll, targetProfit, trials, SimulationMonitor.NONE);
+    }
+
+    /**
+     * Plays the trials in parallel, reporting the progress to the monitor
+     * after every chunk; the monitor counts the trials as series and gets the
+     * sum of their final gain/loss.
+     *
+     * @param parameters   the series, retry count and bet unit; the series
+     *                     count is the horizon of a trial, the attempt limit
+     *                     must be 0
+     * @param bankroll     the capital every trial starts with
+     * @param targetProfit the gain at which a trial stops (0 = no target)
+     * @param trials       the number of trials
+     * @throws CancellationException if the monitor cancels the run
+     */
+    public BankrollStatistics run(SimulationParameters parameters, long bankroll, long targetProfit, long trials,
+            SimulationMonitor monitor) {
+        CompiledSeries series = CompiledSeries.compile(parameters.getBets());
+        if (series.getRowCount() == 0) {
+            throw new IllegalArgumentException("The series has no rows");
+        }
+        if (parameters.getBetUnit() == 0) {
+            throw new IllegalArgumentException("The bet must be at least " + SimulationEngine.COVERED_NUMBERS);
+        }
+        if (parameters.getAttemptLimit() != 0) {
+            throw new IllegalArgumentException("The attempt limit does not apply to bankroll runs");
+        }
+        if (bankroll < parameters.getBetAmount()) {
+            throw new IllegalArgumentException("The bankroll does not cover a bet of " + parameters.getBetAmount());
+        }
+        if (targetProfit < 0 || trials < 0) {
+            throw new IllegalArgumentException("Negative bankroll parameter");
+        }
+
+        SimulationMetrics metrics = SimulationMetrics.getDefault();
+        long start = metrics.getSimulationTimer().start();
+        Job job = new Job(parameters, series, bankroll, targetProfit, trials, engine.getRandomAlgorithm(), monitor);
+        long chunkCount = (trials + TRIAL_CHUNK_SIZE - 1) / TRIAL_CHUNK_SIZE;
+        BankrollStatistics statistics = chunkCount == 0 ? job.newStatistics()
+                : engine.getPool().invoke(new TrialTask(job, 0, chunkCount));
+        metrics.getSimulationTimer().stop(start);
+        metrics.seriesPlayed(statistics.getTotalSeries(), statistics.getTotalSpins());
+        return statistics;
+    }
+
+    /**
+     * Writes the statistics as text.
+     */
+    public static String format(SimulationParameters parameters, BankrollStatistics statistics) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Bankroll %d, target %s, bet %d, retry %d, at most %d series per trial%n",
+                statistics.getBankroll(), statistics.getTargetProfit() > 0 ? statistics.getTargetProfit() : "none",
+                parameters.getBetAmount(), parameters.getRetryCount(), statistics.getMaxSeries()));
+        text.append(String.format("Trials: %d%n", statistics.getTrials()));
+        text.append(String.format("Ruined: %d (%.4f%%)%n", statistics.getRuinedTrials(),
+                100 * statistics.getRuinProbability()));
+        text.append(String.format("Target reached: %d (%.4f%%)%n", statistics.getTargetTrials(),
+                100 * statistics.getTargetProbability()));
+        text.append(String.format("Given up: %d%n", statistics.getGivenUpTrials()));
+        text.append(String.format("Still playing at the horizon: %d%n", statistics.getExpiredTrials()));
+        text.append(String.format("Mean final gain/loss: %.2f%n", statistics.getMeanFinalProfit()));
+        if (statistics.getRuinedTrials() > 0) {
+            text.append(String.format("Spins to ruin: mean %.1f, std.dev %.1f, min %d, max %d%n",
+                    statistics.getMeanRuinSpins(), statistics.getRuinSpinsStandardDeviation(),
+                    statistics.getMinRuinSpins(), statistics.getMaxRuinSpins()));
+            text.append(String.format("%24s %12s %8s%n", "spins to ruin", "trials", "%"));
+            for (int i = 0; i < BankrollStatistics.RUIN_TIME_BUCKETS; i++) {
+                long count = statistics.getRuinCount(i);
+                if (count > 0) {
+                    text.append(String.format("%24s %12d %8.3f%n", (1L << i) + "-" + ((2L << i) - 1), count,
+                            100.0 * count / statistics.getRuinedTrials()));
+                }
+            }
+        }
+        if (statistics.getTargetTrials() > 0) {
+            text.append(String.format("Mean spins to target: %.1f%n", statistics.getMeanTargetSpins()));
+        }
+        text.append(String.format("Spins drawn: %d", statistics.getTotalSpins()));
+        return text.toString();
+    }
+
+    /**
+     * State shared by all the tasks of a run.
+     */
+    private static class Job {
+
+        private final CompiledSeries series;
+        private final int retryCount;
+        private final int betUnit;
+        private final long maxSeries;
+        private final long seed;
+        private final long bankroll;
+        private final long targetProfit;
+        private final long trials;
+        private final RandomAlgorithm randomAlgorithm;
+        private final SimulationMonitor monitor;
+        /** The most a series can win: every bet row won. */
+        private final long maxSeriesGain;
+        private final AtomicLong completedTrials = new AtomicLong();
+        private final AtomicLong totalProfitLoss = new AtomicLong();
+
+        Job(SimulationParameters parameters, CompiledSeries series, long bankroll, long targetProfit, long trials,
+                RandomAlgorithm randomAlgorithm, SimulationMonitor monitor) {
+            this.series = series;
+            this.retryCount = parameters.getRetryCount();
+            this.betUnit = parameters.getBetUnit();
+            this.maxSeries = parameters.getSeriesCount();
+            this.seed = parameters.getSeed();
+            this.bankroll = bankroll;
+            this.targetProfit = targetProfit;
+            this.trials = trials;
+            this.randomAlgorithm = randomAlgorithm;
+            this.monitor = monitor;
+            int betRows = 0;
+            for (int i = 0; i < series.getRowCount(); i++) {
+                if (!series.isIgnored(i)) {
+                    betRows++;
+                }
+            }
+            this.maxSeriesGain = (long) betRows * betUnit;
+        }
+
+        BankrollStatistics newStatistics() {
+            return new BankrollStatistics(bankroll, targetProfit, maxSeries);
+        }
+
+        BankrollStatistics playChunk(long chunk) {
+            BankrollStatistics statistics = newStatistics();
+            Roulette roulette = new Roulette(randomAlgorithm.create(ParallelSimulationEngine.chunkSeed(seed, chunk)));
+            int rowCount = series.getRowCount();
+            int[] spins = new int[rowCount];
+            long stake = (long) betUnit * SimulationEngine.COVERED_NUMBERS;
+            long from = chunk * TRIAL_CHUNK_SIZE;
+            long to = Math.min(from + TRIAL_CHUNK_SIZE, trials);
+            for (long trial = from; trial < to; trial++) {
+                playTrial(statistics, roulette, spins, stake);
+            }
+            return statistics;
+        }
+
+        private void playTrial(BankrollStatistics statistics, Roulette roulette, int[] spins, long stake) {
+            int rowCount = spins.length;
+            long profit = 0;
+            for (long s = 0; s < maxSeries; s++) {
+                if (targetProfit > 0 && !canReachTarget(profit, maxSeries - s)) {
+                    statistics.addGivenUp(s * rowCount, s, profit);
+                    return;
+                }
+                roulette.spin(spins);
+                int losses = 0;
+                for (int i = 0; i < rowCount && losses <= retryCount; i++) {
+                    long mask = series.getMask(i);
+                    if (mask < 0) {
+                        continue;
+                    }
+                    if ((mask >>> spins[i] & 1L) == 0) {
+                        profit += betUnit;
+                        if (targetProfit > 0 && profit >= targetProfit) {
+                            statistics.addTarget(s * rowCount + i + 1, s + 1, profit);
+                            return;
+                        }
+                    } else {
+                        profit -= stake;
+                        losses++;
+                        if (bankroll + profit < stake) {
+                            statistics.addRuin(s * rowCount + i + 1, s + 1, profit);
+                            return;
+                        }
+                    }
+                }
+            }
+            statistics.addExpired(maxSeries * rowCount, maxSeries, profit);
+        }
+
+        /**
+         * Returns true if the target can still be reached in the given series,
+         * winning all their rows.
+         */
+        private boolean canReachTarget(long profit, long remainingSeries) {
+            return maxSeriesGain > 0 && (targetProfit - profit + maxSeriesGain - 1) / maxSeriesGain <= remainingSeries;
+        }
+
+        void chunkCompleted(BankrollStatistics statistics) {
+            long profit = totalProfitLoss.addAndGet(statistics.getTotalFinalProfit());
+            long completed = completedTrials.addAndGet(statistics.getTrials());
+            monitor.seriesCompleted(completed, trials, profit);
+        }
+    }
+
+    private static class TrialTask extends RecursiveTask<BankrollStatistics> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Job job;
+        private final long fromChunk;
+        private final long toChunk;
+
+        TrialTask(Job job, long fromChunk, long toChunk) {
+            this.job = job;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected BankrollStatistics compute() {
+            if (toChunk - fromChunk == 1) {
+                if (job.monitor.isCancelled()) {
+                    throw new CancellationException("Simulation cancelled");
+                }
+                long allocated = SimulationMetrics.threadAllocatedBytes();
+                BankrollStatistics statistics = job.playChunk(fromChunk);
+                SimulationMetrics.getDefault().allocatedSince(allocated, statistics.getTotalSeries());
+                job.chunkCompleted(statistics);
+                return statistics;
+            }
+            long middle = (fromChunk + toChunk) >>> 1;
+            TrialTask left = new TrialTask(job, fromChunk, middle);
+            TrialTask right = new TrialTask(job, middle, toChunk);
+            right.fork();
+            BankrollStatistics statistics = left.compute();
+            // Always merge left to right, so that a seeded run is reproducible
+            statistics.merge(right.join());
+            return statistics;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package it.campione.roulette;
+
+import java.util.Arrays;
+
+/**
+ * Aggregated outcome of many bankroll trials (see {@link BankrollSimulation}),
+ * kept in constant memory whatever the number of trials. Every trial ends in
+ * one of four ways: ruined, target reached, given up because the target could
+ * no longer be reached within the horizon, or still playing at the horizon.
+ * The times to ruin, in spins, are summarized by their mean, range and a
+ * histogram of power-of-two buckets. Instances are filled by a single thread
+ * and combined with {@link #merge}.
+ *
+ * @author D. Campione
+ *
+ */
+public class BankrollStatistics {
+
+    /** Buckets of the histogram of the times to ruin: [2^k, 2^(k+1)) spins. */
+    public static final int RUIN_TIME_BUCKETS = 64;
+
+    private final long bankroll;
+    private final long targetProfit;
+    private final long maxSeries;
+    private long trials;
+    private long ruinedTrials;
+    private long targetTrials;
+    private long givenUpTrials;
+    private long expiredTrials;
+    private long totalSpins;
+    private long totalSeries;
+    private long totalFinalProfit;
+    private long minRuinSpins = Long.MAX_VALUE;
+    private long maxRuinSpins;
+    private double ruinMean;
+    private double ruinM2;
+    private long totalTargetSpins;
+    private final long[] ruinHistogram = new long[RUIN_TIME_BUCKETS];
+
+    /**
+     * @param bankroll     the capital every trial starts with
+     * @param targetProfit the gain at which a trial stops (0 = no target)
+     * @param maxSeries    the most series played by a trial
+     */
+    public BankrollStatistics(long bankroll, long targetProfit, long maxSeries) {
+        this.bankroll = bankroll;
+        this.targetProfit = targetProfit;
+        this.maxSeries = maxSeries;
+    }
+
+    /**
+     * Records a trial ruined at the given spin.
+     *
+     * @param spins  the spins drawn until the ruin, the ruining one included
+     * @param series the series started until the ruin
+     * @param profit the gain/loss at the ruin
+     */
+    public void addRuin(long spins, long series, long profit) {
+        addTrial(spins, series, profit);
+        ruinedTrials++;
+        if (spins < minRuinSpins) {
+            minRuinSpins = spins;
+        }
+        if (spins > maxRuinSpins) {
+            maxRuinSpins = spins;
+        }
+        ruinHistogram[63 - Long.numberOfLeadingZeros(spins)]++;
+
+        // Welford's online update of mean and variance
+        double delta = spins - ruinMean;
+        ruinMean += delta / ruinedTrials;
+        ruinM2 += delta * (spins - ruinMean);
+    }
+
+    /**
+     * Records a trial that reached the target at the given spin.
+     */
+    public void addTarget(long spins, long series, long profit) {
+        addTrial(spins, series, profit);
+        targetTrials++;
+        totalTargetSpins += spins;
+    }
+
+    /**
+     * Records a trial stopped because the target could no longer be reached.
+     */
+    public void addGivenUp(long spins, long series, long profit) {
+        addTrial(spins, series, profit);
+        givenUpTrials++;
+    }
+
+    /**
+     * Records a trial that played all its series.
+     */
+    public void addExpired(long spins, long series, long profit) {
+        addTrial(spins, series, profit);
+        expiredTrials++;
+    }
+
+    private void addTrial(long spins, long series, long profit) {
+        trials++;
+        totalSpins += spins;
+        totalSeries += series;
+        totalFinalProfit += profit;
+    }
+
+    /**
+     * Adds the statistics of other trials of the same bankroll, target and
+     * horizon.
+     */
+    public void merge(BankrollStatistics other) {
+        if (other.bankroll != bankroll || other.targetProfit != targetProfit || other.maxSeries != maxSeries) {
+            throw new IllegalArgumentException("Statistics of different bankroll runs cannot be merged");
+        }
+        if (other.ruinedTrials > 0) {
+            long count = ruinedTrials + other.ruinedTrials;
+            // Chan's parallel combination of mean and variance
+            double delta = other.ruinMean - ruinMean;
+            ruinMean += delta * other.ruinedTrials / count;
+            ruinM2 += other.ruinM2 + delta * delta * ((double) ruinedTrials * other.ruinedTrials / count);
+            minRuinSpins = Math.min(minRuinSpins, other.minRuinSpins);
+            maxRuinSpins = Math.max(maxRuinSpins, other.maxRuinSpins);
+            for (int i = 0; i < RUIN_TIME_BUCKETS; i++) {
+                ruinHistogram[i] += other.ruinHistogram[i];
+            }
+        }
+        trials += other.trials;
+        ruinedTrials += other.ruinedTrials;
+        targetTrials += other.targetTrials;
+        givenUpTrials += other.givenUpTrials;
+        expiredTrials += other.expiredTrials;
+        totalSpins += other.totalSpins;
+        totalSeries += other.totalSeries;
+        totalFinalProfit += other.totalFinalProfit;
+        totalTargetSpins += other.totalTargetSpins;
+    }
+
+    public long getBankroll() {
+        return bankroll;
+    }
+
+    public long getTargetProfit() {
+        return targetProfit;
+    }
+
+    public long getMaxSeries() {
+        return maxSeries;
+    }
+
+    public long getTrials() {
+        return trials;
+    }
+
+    public long getRuinedTrials() {
+        return ruinedTrials;
+    }
+
+    public long getTargetTrials() {
+        return targetTrials;
+    }
+
+    public long getGivenUpTrials() {
+        return givenUpTrials;
+    }
+
+    public long getExpiredTrials() {
+        return expiredTrials;
+    }
+
+    public double getRuinProbability() {
+        return trials > 0 ? (double) ruinedTrials / trials : 0;
+    }
+
+    public double getTargetProbability() {
+        return trials > 0 ? (double) targetTrials / trials : 0;
+    }
+
+    /**
+     * Returns the spins drawn by all the trials, which stop drawing at their
+     * end.
+     */
+    public long getTotalSpins() {
+        return totalSpins;
+    }
+
+    public long getTotalSeries() {
+        return totalSeries;
+    }
+
+    /**
+     * Returns the sum of the gain/loss of the trials at their end.
+     */
+    public long getTotalFinalProfit() {
+        return totalFinalProfit;
+    }
+
+    /**
+     * Returns the mean gain/loss of a trial at its end.
+     */
+    public double getMeanFinalProfit() {
+        return trials > 0 ? (double) totalFinalProfit / trials : 0;
+    }
+
+    /**
+     * Returns the mean spins until the ruin, over the ruined trials.
+     */
+    public double getMeanRuinSpins() {
+        return ruinMean;
+    }
+
+    public double getRuinSpinsStandardDeviation() {
+        return ruinedTrials > 1 ? Math.sqrt(ruinM2 / (ruinedTrials - 1)) : 0;
+    }
+
+    public long getMinRuinSpins() {
+        return ruinedTrials > 0 ? minRuinSpins : 0;
+    }
+
+    public long getMaxRuinSpins() {
+        return maxRuinSpins;
+    }
+
+    /**
+     * Returns the mean spins until the target, over the trials that reached
+     * it.
+     */
+    public double getMeanTargetSpins() {
+        return targetTrials > 0 ? (double) totalTargetSpins / targetTrials : 0;
+    }
+
+    /**
+     * Returns how many trials were ruined after [2^bucket, 2^(bucket+1))
+     * spins.
+     */
+    public long getRuinCount(int bucket) {
+        return ruinHistogram[bucket];
+    }
+
+    public long[] getRuinHistogram() {
+        return Arrays.copyOf(ruinHistogram, RUIN_TIME_BUCKETS);
+    }
+}
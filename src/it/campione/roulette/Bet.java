@@ -16,6 +16,14 @@ public class Bet {
         this.bet2 = bet2;
     }
 
+    public int getBet1() {
+        return bet1;
+    }
+
+    public int getBet2() {
+        return bet2;
+    }
+
     public boolean shouldIgnore() {
         return bet1 == -1 && bet2 == -1;
     }
@@ -24,6 +32,23 @@ public class Bet {
         return number != bet1 && number != bet2;
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Bet)) {
+            return false;
+        }
+        Bet other = (Bet) obj;
+        return bet1 == other.bet1 && bet2 == other.bet2;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * bet1 + bet2;
+    }
+
     @Override
     public String toString() {
         if (shouldIgnore()) {
@@ -0,0 +1,91 @@
+package it.campione.roulette;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Converts series and spin logs between the text format and the
+ * {@link BinaryFormat}. A binary input is written as text, according to its
+ * kind; a text input is written as a binary series, or as a binary spin log
+ * with --spins. For example:
+ *
+ * <pre>
+ * java -cp roulette.jar it.campione.roulette.BinaryConverter serie.txt serie.bin
+ * java -cp roulette.jar it.campione.roulette.BinaryConverter --spins history.csv history.bin
+ * </pre>
+ *
+ * A text spin log has the numbers separated by commas, semicolons or blanks,
+ * with an optional header line.
+ *
+ * @author D. Campione
+ *
+ */
+public class BinaryConverter {
+
+    private static final String USAGE = "Usage: BinaryConverter [--spins] <input> <output>";
+
+    public static void main(String... args) {
+        System.exit(run(args, System.err));
+    }
+
+    static int run(String[] args, PrintStream err) {
+        boolean spins = args.length == 3 && args[0].equals("--spins");
+        if (args.length != (spins ? 3 : 2)) {
+            err.println(USAGE);
+            return 2;
+        }
+        Path input = Paths.get(args[args.length - 2]);
+        Path output = Paths.get(args[args.length - 1]);
+        try {
+            if (BinaryFormat.isBinary(input)) {
+                if (BinaryFormat.readKind(input) == BinaryFormat.SPINS) {
+                    err.println(spinsToText(input, output) + " spins");
+                } else {
+                    SeriesFile.write(output, BinaryFormat.readSeries(input));
+                }
+            } else if (spins) {
+                err.println(textToSpins(input, output) + " spins");
+            } else {
+                BinaryFormat.writeSeries(output, SeriesFile.read(input));
+            }
+            return 0;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return 2;
+        } catch (IOException e) {
+            err.println(e);
+            return 1;
+        }
+    }
+
+    static long textToSpins(Path input, Path output) throws IOException {
+        try (SpinSource source = SpinSource.open(input); SpinLogWriter writer = new SpinLogWriter(output)) {
+            int[] numbers = new int[1 << 16];
+            int count;
+            while ((count = source.read(numbers, 0, numbers.length)) >= 0) {
+                writer.write(numbers, 0, count);
+            }
+            return writer.getCount();
+        }
+    }
+
+    static long spinsToText(Path input, Path output) throws IOException {
+        try (SpinLog log = SpinLog.open(input); BufferedWriter writer = Files.newBufferedWriter(output)) {
+            int[] numbers = new int[1 << 16];
+            long position = 0;
+            int count;
+            while ((count = log.read(position, numbers, 0, numbers.length)) > 0) {
+                for (int i = 0; i < count; i++) {
+                    writer.write(Integer.toString(numbers[i]));
+                    writer.newLine();
+                }
+                position += count;
+            }
+            return position;
+        }
+    }
+}
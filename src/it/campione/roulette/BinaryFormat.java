@@ -0,0 +1,159 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary layout of series of excluded couples and of recorded spins.
+ * Both start with a fixed header of {@value #HEADER_SIZE} bytes (big-endian):
+ *
+ * <pre>
+ * int   magic   "RLTB"
+ * short version 1
+ * short kind    1 = series, 2 = spins, 3 = journal segment, 4 = checkpoint
+ * long  count   rows or spins that follow, the index of the segment or of
+ *               the next chunk
+ * </pre>
+ *
+ * A series takes two bytes per row, the two excluded numbers, with
+ * {@code 0xFF 0xFF} for an "ignora" row; a spin log takes one byte per spin.
+ * The files are read through {@link FileChannel#map}, see also
+ * {@link SpinLog}. The records of a journal segment are described by the
+ * {@link JournalWriter}, the content of a checkpoint by the {@link Checkpoint}.
+ *
+ * @author D. Campione
+ *
+ */
+public final class BinaryFormat {
+
+    public static final int MAGIC = 0x524C5442;
+    public static final short VERSION = 1;
+    public static final short SERIES = 1;
+    public static final short SPINS = 2;
+    public static final short JOURNAL = 3;
+    public static final short CHECKPOINT = 4;
+    public static final int HEADER_SIZE = 16;
+
+    static final int IGNORED = 0xFF;
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * Tells whether the file starts with the header of the binary format.
+     */
+    public static boolean isBinary(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return false;
+            }
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining()) {
+                if (channel.read(magic, magic.position()) < 0) {
+                    return false;
+                }
+            }
+            return magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Returns the kind ({@link #SERIES} or {@link #SPINS}) of a binary file.
+     */
+    public static short readKind(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readHeader(channel).getShort(6);
+        }
+    }
+
+    public static void writeSeries(Path path, List<Bet> bets) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 2 * bets.size());
+        putHeader(buffer, SERIES, bets.size());
+        for (Bet bet : bets) {
+            if (bet.shouldIgnore()) {
+                buffer.put((byte) IGNORED).put((byte) IGNORED);
+            } else {
+                buffer.put((byte) checkNumber(bet.getBet1())).put((byte) checkNumber(bet.getBet2()));
+            }
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    public static List<Bet> readSeries(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long count = checkHeader(channel, SERIES, 2);
+            if (count > Integer.MAX_VALUE) {
+                throw new IOException("Too many rows in " + path + ": " + count);
+            }
+            MappedByteBuffer rows = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, 2 * count);
+            List<Bet> bets = new ArrayList<>((int) count);
+            for (int i = 0; i < count; i++) {
+                int bet1 = rows.get(2 * i) & 0xFF;
+                int bet2 = rows.get(2 * i + 1) & 0xFF;
+                if (bet1 == IGNORED && bet2 == IGNORED) {
+                    bets.add(new Bet(-1, -1));
+                } else if (bet1 < CompiledSeries.POCKETS && bet2 < CompiledSeries.POCKETS) {
+                    bets.add(new Bet(bet1, bet2));
+                } else {
+                    throw new IOException("Invalid row " + (i + 1) + " in " + path);
+                }
+            }
+            return bets;
+        }
+    }
+
+    static void putHeader(ByteBuffer buffer, short kind, long count) {
+        buffer.putInt(MAGIC).putShort(VERSION).putShort(kind).putLong(count);
+    }
+
+    /**
+     * Reads and validates the header of a file of the given kind, whose
+     * entries take the given bytes, and returns the count of its entries.
+     */
+    static long checkHeader(FileChannel channel, short kind, int entrySize) throws IOException {
+        ByteBuffer header = readHeader(channel);
+        if (header.getShort(6) != kind) {
+            throw new IOException("Unexpected kind of binary file: " + header.getShort(6));
+        }
+        long count = header.getLong(8);
+        if (count < 0 || count > (channel.size() - HEADER_SIZE) / entrySize) {
+            throw new IOException("Truncated binary file: " + count + " entries expected");
+        }
+        return count;
+    }
+
+    static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Not a binary series or spin file");
+            }
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary series or spin file");
+        }
+        if (header.getShort(4) != VERSION) {
+            throw new IOException("Unsupported version of the binary format: " + header.getShort(4));
+        }
+        return header;
+    }
+
+    static int checkNumber(int number) {
+        if (number < 0 || number >= CompiledSeries.POCKETS) {
+            throw new IllegalArgumentException("Not a roulette number: " + number);
+        }
+        return number;
+    }
+}
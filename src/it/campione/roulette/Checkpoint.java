@@ -0,0 +1,237 @@
+package it.campione.roulette;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint file of a long run of the {@link ParallelSimulationEngine} or of
+ * a {@link ParameterSweep}, so that a run stopped for any reason resumes where
+ * it was left. Runs play their chunks in batches of {@link #BATCH_CHUNKS},
+ * merged in order, with or without checkpoint; after a batch, at most once per
+ * interval, saves the statistics of the batches played so far and the index
+ * of the next chunk; it also saves them when it is cancelled and when it
+ * ends. The random numbers of a chunk depend only on the seed of the run and
+ * on the index of the chunk, so that index is the whole position of the
+ * random streams. A resumed run restores the statistics bit for bit and
+ * merges the next batches as the uninterrupted run would, so a seeded run
+ * ends with exactly the same statistics however many times it is stopped,
+ * with any number of threads, and as without checkpoint. A finished run
+ * leaves its last checkpoint, and running it again gives its statistics at
+ * once.
+ * <p>
+ * The file has the header of the {@link BinaryFormat} (kind checkpoint, count
+ * = index of the next chunk), then the description of the run (int length and
+ * UTF-8 text), which must match the one of the resumed run, the number of
+ * statistics and their states, and the CRC-32 of all that follows the header.
+ * It is written aside and moved in place, atomically where the file system
+ * allows it, so a crash while saving leaves the previous checkpoint.
+ *
+ * @author D. Campione
+ *
+ */
+public class Checkpoint {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 60_000;
+
+    /**
+     * Chunks merged at a time by every run, and played between two possible
+     * checkpoints: enough to keep many cores busy, few enough to checkpoint
+     * every few seconds.
+     */
+    static final int BATCH_CHUNKS = 256;
+
+    private final Path path;
+    private final long intervalNanos;
+    private long lastSave;
+    private long resumedSeries;
+
+    public Checkpoint(Path path) {
+        this(path, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Creates the checkpoint of a run.
+     *
+     * @param path           the checkpoint file, resumed if it exists
+     * @param intervalMillis the shortest time between two checkpoints, 0 to
+     *                       save after every batch
+     */
+    public Checkpoint(Path path, long intervalMillis) {
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("Negative checkpoint interval: " + intervalMillis);
+        }
+        this.path = path;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the series of the run already played when it was resumed, 0 if
+     * it started from the beginning.
+     */
+    public long getResumedSeries() {
+        return resumedSeries;
+    }
+
+    /**
+     * Loads the saved state of the run, if the file exists, into the given
+     * empty statistics.
+     *
+     * @param run        the description of the run
+     * @param statistics the statistics of the run, as many as saved
+     * @return the index of the next chunk to play, 0 without a file
+     * @throws IllegalArgumentException if the file is of another run
+     */
+    long resume(String run, SeriesStatistics[] statistics) throws IOException {
+        lastSave = System.nanoTime();
+        resumedSeries = 0;
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long nextChunk;
+        byte[] content;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = BinaryFormat.readHeader(channel);
+            if (header.getShort(6) != BinaryFormat.CHECKPOINT) {
+                throw new IOException("Not a checkpoint: " + path);
+            }
+            nextChunk = header.getLong(8);
+            long size = channel.size() - BinaryFormat.HEADER_SIZE;
+            if (size < 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("Damaged checkpoint: " + path);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, BinaryFormat.HEADER_SIZE + buffer.position()) < 0) {
+                    throw new IOException("Damaged checkpoint: " + path);
+                }
+            }
+            content = buffer.array();
+        }
+        int length = content.length - 4;
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, length);
+        if ((int) crc.getValue() != ByteBuffer.wrap(content, length, 4).getInt()) {
+            throw new IOException("Damaged checkpoint: " + path);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content, 0, length));
+        byte[] saved = new byte[in.readInt()];
+        in.readFully(saved);
+        if (!run.equals(new String(saved, StandardCharsets.UTF_8))) {
+            throw new IllegalArgumentException("The checkpoint " + path + " is of another run");
+        }
+        if (in.readInt() != statistics.length) {
+            throw new IOException("Damaged checkpoint: " + path);
+        }
+        for (SeriesStatistics configuration : statistics) {
+            configuration.readState(in);
+        }
+        resumedSeries = statistics.length > 0 ? statistics[0].getSeriesCount() : 0;
+        return nextChunk;
+    }
+
+    /**
+     * Plays the chunks [fromChunk, chunkCount) a batch at a time, merging every
+     * batch into the statistics in order and saving them as described above.
+     */
+    void play(String run, SeriesStatistics[] statistics, long fromChunk, long chunkCount, Batch batch)
+            throws IOException {
+        long played = fromChunk;
+        while (played < chunkCount) {
+            long to = Math.min(played + BATCH_CHUNKS, chunkCount);
+            SeriesStatistics[] batchStatistics;
+            try {
+                batchStatistics = batch.play(played, to);
+            } catch (CancellationException e) {
+                save(run, played, statistics);
+                throw e;
+            }
+            // Always merge in chunk order, so that a resumed run is reproducible
+            for (int i = 0; i < statistics.length; i++) {
+                statistics[i].merge(batchStatistics[i]);
+            }
+            played = to;
+            if (played < chunkCount && System.nanoTime() - lastSave >= intervalNanos) {
+                save(run, played, statistics);
+            }
+        }
+        save(run, played, statistics);
+    }
+
+    private void save(String run, long nextChunk, SeriesStatistics[] statistics) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] description = run.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(description.length);
+        out.write(description);
+        out.writeInt(statistics.length);
+        for (SeriesStatistics configuration : statistics) {
+            configuration.writeState(out);
+        }
+        out.flush();
+        byte[] content = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFormat.HEADER_SIZE + content.length + 4);
+        BinaryFormat.putHeader(buffer, BinaryFormat.CHECKPOINT, nextChunk);
+        buffer.put(content).putInt((int) crc.getValue()).flip();
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        lastSave = System.nanoTime();
+    }
+
+    /**
+     * Appends the losing numbers of every row of the layout to the description
+     * of a run.
+     */
+    static void appendLayout(StringBuilder run, CompiledSeries series) {
+        run.append(" rows=");
+        for (int i = 0; i < series.getRowCount(); i++) {
+            if (i > 0) {
+                run.append(',');
+            }
+            run.append(Long.toHexString(series.getMask(i)));
+        }
+    }
+
+    /**
+     * Plays a batch of chunks.
+     */
+    interface Batch {
+
+        /**
+         * Plays the chunks [fromChunk, toChunk) and returns their statistics,
+         * in the order of the statistics of the run.
+         */
+        SeriesStatistics[] play(long fromChunk, long toChunk);
+    }
+}
@@ -0,0 +1,759 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.management.JMException;
+
+/**
+ * Headless entry point: runs the simulation on the
+ * {@link ParallelSimulationEngine}, without JavaFX, writes the results to the
+ * standard output or to a file and exits. For example:
+ *
+ * <pre>
+ * java -cp roulette.jar it.campione.roulette.CommandLineRunner --series-file serie.txt
+ *         --series 1000000 --retry 2 --bet 35 --threads 8 --seed 42 --format json
+ * </pre>
+ *
+ * --variance-reduction draws the series in antithetic pairs or in groups
+ * stratified over the 37 numbers (see {@link VarianceReduction}). With
+ * --precision, the series are played until the mean gain/loss per series is
+ * known within the given amount at the --confidence level, --series being
+ * then the most series to play. With --sweep,
+ * the series file, retry, bet and attempt limit options accept comma-separated
+ * lists and every combination is run by a {@link ParameterSweep}, on the same
+ * drawn numbers. With --checkpoint, a seeded run or sweep saves its progress
+ * in the given file every --checkpoint-interval seconds and, started again
+ * with the same options, resumes from it with the same final results (see
+ * {@link Checkpoint}). With --spins, the series are replayed on recorded spins (see
+ * {@link SpinReplay}), all of them unless --series is given; the spins can
+ * also be the directory of a journal. With --journal, the series are played
+ * on a single thread, without variance reduction nor precision target, and
+ * recorded in the given directory by a {@link JournalWriter}; a seed then
+ * draws other numbers than in a parallel run. With --bankroll,
+ * every one of --trials trials starts with the given capital and plays until
+ * the ruin, the --target gain or --series series (see
+ * {@link BankrollSimulation}). With --optimize, a {@link LayoutOptimizer}
+ * searches for a better layout than the series file, scored exactly on the
+ * wheel of the --spins (fair without them) or on --series series of the spins,
+ * and --save-series writes it. With --floor, a {@link FloorSimulation} plays
+ * --tables tables of --players seats for --rounds spins each, the players
+ * taking in turn every combination of the series file, retry and bet lists,
+ * with the --bankroll if given. With --exact, the {@link ExactEvaluator}
+ * computes the distribution of a series without playing it and cross-checks
+ * --series Monte Carlo series (a million by default) against it. With
+ * --serve, the simulation is offered as a local HTTP service (see
+ * {@link SimulationServer}) until the process is stopped. With --metrics, the
+ * {@link SimulationMetrics} are written to the standard error at the end.
+ *
+ * @author D. Campione
+ *
+ */
+public class CommandLineRunner {
+
+    private static final String USAGE = "Usage: CommandLineRunner [--series-file serie.txt] [--series 1]"
+            + " [--retry 0] [--bet 35] [--attempt-limit 0] [--threads N] [--seed S] [--rng SPLITTABLE]"
+            + " [--variance-reduction none|antithetic|stratified] [--precision 0.1 --confidence 0.95]"
+            + " [--format text|csv|json] [--output file] [--checkpoint file --checkpoint-interval 60]"
+            + " [--locale en_US] [--sweep] [--spins file|journal] [--journal dir]"
+            + " [--bankroll 3500 --target 0 --trials 10000 --series 1000]"
+            + " [--optimize --score exact|sampled --candidates 100000 --walkers 8 --save-series file]"
+            + " [--floor --tables 1000 --players 6 --rounds 10000] [--exact]"
+            + " [--serve --port 8080 --max-in-flight 64 --timeout 30000 --max-series 100000000 --cache-mb 64]"
+            + " [--metrics]";
+
+    private static final Set<String> OPTIONS = new HashSet<>(Arrays.asList("series-file", "series", "retry", "bet",
+            "attempt-limit", "threads", "seed", "rng", "variance-reduction", "precision", "confidence", "format",
+            "output", "checkpoint", "checkpoint-interval", "locale", "sweep", "spins", "journal", "bankroll", "target",
+            "trials", "optimize", "score", "candidates", "walkers", "save-series", "floor", "tables", "players",
+            "rounds", "exact", "serve", "port", "max-in-flight", "timeout", "max-series", "cache-mb", "metrics",
+            "help"));
+
+    public static void main(String... args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the command line and returns the exit status: 0 on success, 1 on an
+     * I/O error and 2 on wrong arguments.
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Map<String, String> options;
+        try {
+            options = parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        }
+        if (options.containsKey("help")) {
+            out.println(USAGE);
+            return 0;
+        }
+
+        if (options.containsKey("sweep")) {
+            return runSweep(options, out, err);
+        }
+        if (options.containsKey("serve")) {
+            return serve(options, err);
+        }
+        if (options.containsKey("floor")) {
+            return runFloor(options, out, err);
+        }
+        if (options.containsKey("bankroll")) {
+            return runBankroll(options, out, err);
+        }
+        if (options.containsKey("optimize")) {
+            return runOptimizer(options, out, err);
+        }
+        if (options.containsKey("exact")) {
+            return runExact(options, out, err);
+        }
+
+        try {
+            List<Bet> bets = SeriesFile.read(Paths.get(options.getOrDefault("series-file", "serie.txt")));
+            int retryCount = intOption(options, "retry", 0);
+            long seriesCount = longOption(options, "series", 1);
+            int betAmount = intOption(options, "bet", SimulationEngine.COVERED_NUMBERS);
+            int attemptLimit = intOption(options, "attempt-limit", 0);
+            int threads = intOption(options, "threads", Runtime.getRuntime().availableProcessors());
+            long seed = options.containsKey("seed") ? longOption(options, "seed", 0)
+                    : ThreadLocalRandom.current().nextLong();
+            RandomAlgorithm algorithm = RandomAlgorithm.fromName(options.getOrDefault("rng", "SPLITTABLE"));
+            VarianceReduction varianceReduction = VarianceReduction
+                    .fromName(options.getOrDefault("variance-reduction", "none"));
+            String format = options.getOrDefault("format", "text");
+            if (!format.equals("text") && !format.equals("csv") && !format.equals("json")) {
+                throw new IllegalArgumentException("Unknown format: " + format);
+            }
+            if (threads < 1) {
+                throw new IllegalArgumentException("The threads must be at least 1");
+            }
+            if (options.containsKey("journal") && (options.containsKey("spins") || options.containsKey("precision")
+                    || options.containsKey("confidence") || options.containsKey("variance-reduction")
+                    || options.containsKey("threads"))) {
+                throw new IllegalArgumentException("--journal plays plain random series on a single thread,"
+                        + " without --spins, --precision, --confidence, --variance-reduction or --threads");
+            }
+
+            if (options.containsKey("spins") && (options.containsKey("precision")
+                    || options.containsKey("confidence"))) {
+                throw new IllegalArgumentException("--precision needs random series, not recorded --spins");
+            }
+
+            Checkpoint checkpoint = checkpointOption(options);
+            if (checkpoint != null && (options.containsKey("spins") || options.containsKey("journal")
+                    || options.containsKey("precision"))) {
+                throw new IllegalArgumentException("--checkpoint needs a run of random series to a fixed count");
+            }
+
+            int betUnit = betUnit(betAmount);
+            long start = System.nanoTime();
+            SeriesStatistics statistics;
+            if (options.containsKey("spins")) {
+                try (SpinSource spins = SpinSource.open(Paths.get(options.get("spins")))) {
+                    statistics = SpinReplay.run(spins, bets, retryCount, betUnit,
+                            options.containsKey("series") ? seriesCount : Long.MAX_VALUE, attemptLimit,
+                            SimulationMonitor.NONE);
+                }
+                seriesCount = statistics.getSeriesCount();
+                seed = 0;
+            } else if (options.containsKey("journal")) {
+                try (JournalWriter journal = new JournalWriter(Paths.get(options.get("journal")))) {
+                    SimulationEngine engine = new SimulationEngine(new Roulette(algorithm.create(seed)));
+                    engine.setDetailLimit(0);
+                    engine.setJournal(journal);
+                    statistics = engine.run(bets, retryCount, seriesCount, betUnit, attemptLimit).getStatistics();
+                    if (engine.getJournalFailure() != null) {
+                        throw engine.getJournalFailure();
+                    }
+                }
+            } else {
+                try (ParallelSimulationEngine engine = new ParallelSimulationEngine(threads)) {
+                    engine.setRandomAlgorithm(algorithm);
+                    engine.setVarianceReduction(varianceReduction);
+                    if (options.containsKey("precision")) {
+                        statistics = engine.runUntilPrecision(
+                                new SimulationParameters(bets, retryCount,
+                                        options.containsKey("series") ? seriesCount : Long.MAX_VALUE, betUnit,
+                                        attemptLimit, seed),
+                                doubleOption(options, "precision", 0), doubleOption(options, "confidence", 0.95),
+                                SimulationMonitor.NONE);
+                    } else if (checkpoint != null) {
+                        statistics = engine.run(
+                                new SimulationParameters(bets, retryCount, seriesCount, betUnit, attemptLimit, seed),
+                                checkpoint, SimulationMonitor.NONE);
+                    } else {
+                        statistics = engine.run(
+                                new SimulationParameters(bets, retryCount, seriesCount, betUnit, attemptLimit, seed));
+                    }
+                    // Played to a precision, or rounded to whole groups of the variance reduction
+                    seriesCount = statistics.getSeriesCount();
+                }
+            }
+            SimulationParameters parameters = new SimulationParameters(bets, retryCount, seriesCount, betUnit,
+                    attemptLimit, seed);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            String output = format(format, parameters, statistics, options.getOrDefault("locale", "en_US"));
+            write(options, out, output);
+            err.println(seriesCount + " series in " + elapsedMillis + " ms"
+                    + (options.containsKey("spins") ? ", replayed from " + options.get("spins") : ", seed " + seed)
+                    + resumedText(checkpoint));
+            if (options.containsKey("metrics")) {
+                err.print(SimulationMetrics.getDefault().dump());
+            }
+            return 0;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        } catch (IOException e) {
+            err.println(e);
+            return 1;
+        }
+    }
+
+    private static int runSweep(Map<String, String> options, PrintStream out, PrintStream err) {
+        try {
+            List<List<Bet>> layouts = new ArrayList<>();
+            for (String file : options.getOrDefault("series-file", "serie.txt").split(",")) {
+                layouts.add(SeriesFile.read(Paths.get(file.trim())));
+            }
+            int[] retryCounts = intListOption(options, "retry", 0);
+            int[] betAmounts = intListOption(options, "bet", SimulationEngine.COVERED_NUMBERS);
+            int[] attemptLimits = intListOption(options, "attempt-limit", 0);
+            for (int betAmount : betAmounts) {
+                betUnit(betAmount);
+            }
+            long seriesCount = longOption(options, "series", 1);
+            int threads = intOption(options, "threads", Runtime.getRuntime().availableProcessors());
+            long seed = options.containsKey("seed") ? longOption(options, "seed", 0)
+                    : ThreadLocalRandom.current().nextLong();
+            RandomAlgorithm algorithm = RandomAlgorithm.fromName(options.getOrDefault("rng", "SPLITTABLE"));
+            String format = options.getOrDefault("format", "text");
+            if (!format.equals("text") && !format.equals("csv") && !format.equals("json")) {
+                throw new IllegalArgumentException("Unknown format: " + format);
+            }
+            if (threads < 1) {
+                throw new IllegalArgumentException("The threads must be at least 1");
+            }
+            refuseOptions(options, "sweep", "precision", "confidence", "variance-reduction", "journal", "spins");
+
+            Checkpoint checkpoint = checkpointOption(options);
+
+            long start = System.nanoTime();
+            List<ParameterSweep.Result> results;
+            try (ParallelSimulationEngine engine = new ParallelSimulationEngine(threads)) {
+                engine.setRandomAlgorithm(algorithm);
+                ParameterSweep sweep = new ParameterSweep(engine);
+                if (checkpoint != null) {
+                    results = sweep.run(layouts, retryCounts, betAmounts, attemptLimits, seriesCount, seed,
+                            checkpoint);
+                } else {
+                    results = sweep.run(layouts, retryCounts, betAmounts, attemptLimits, seriesCount, seed);
+                }
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            write(options, out, formatSweep(format, results));
+            err.println(results.size() + " configurations of " + seriesCount + " series in " + elapsedMillis
+                    + " ms, seed " + seed + resumedText(checkpoint));
+            if (options.containsKey("metrics")) {
+                err.print(SimulationMetrics.getDefault().dump());
+            }
+            return 0;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        } catch (IOException e) {
+            err.println(e);
+            return 1;
+        }
+    }
+
+    private static int runBankroll(Map<String, String> options, PrintStream out, PrintStream err) {
+        try {
+            List<Bet> bets = SeriesFile.read(Paths.get(options.getOrDefault("series-file", "serie.txt")));
+            int retryCount = intOption(options, "retry", 0);
+            long maxSeries = longOption(options, "series", 1000);
+            int betAmount = intOption(options, "bet", SimulationEngine.COVERED_NUMBERS);
+            long bankroll = longOption(options, "bankroll", 0);
+            long targetProfit = longOption(options, "target", 0);
+            long trials = longOption(options, "trials", 10000);
+            int threads = intOption(options, "threads", Runtime.getRuntime().availableProcessors());
+            long seed = options.containsKey("seed") ? longOption(options, "seed", 0)
+                    : ThreadLocalRandom.current().nextLong();
+            RandomAlgorithm algorithm = RandomAlgorithm.fromName(options.getOrDefault("rng", "SPLITTABLE"));
+            String format = options.getOrDefault("format", "text");
+            if (!format.equals("text") && !format.equals("csv") && !format.equals("json")) {
+                throw new IllegalArgumentException("Unknown format: " + format);
+            }
+            if (threads < 1) {
+                throw new IllegalArgumentException("The threads must be at least 1");
+            }
+            refuseOptions(options, "bankroll", "variance-reduction", "precision", "confidence", "checkpoint",
+                    "spins", "journal");
+
+            // The simulation refuses an attempt limit, rather than the run ignoring it
+            SimulationParameters parameters = new SimulationParameters(bets, retryCount, maxSeries,
+                    betUnit(betAmount), intOption(options, "attempt-limit", 0), seed);
+            long start = System.nanoTime();
+            BankrollStatistics statistics;
+            try (ParallelSimulationEngine engine = new ParallelSimulationEngine(threads)) {
+                engine.setRandomAlgorithm(algorithm);
+                statistics = new BankrollSimulation(engine).run(parameters, bankroll, targetProfit, trials);
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            String output;
+            switch (format) {
+            case "csv":
+                output = StatisticsFormat.BANKROLL_CSV_HEADER + "\n" + StatisticsFormat.toCsv(parameters, statistics);
+                break;
+            case "json":
+                output = StatisticsFormat.toJson(parameters, statistics);
+                break;
+            default:
+                output = BankrollSimulation.format(parameters, statistics);
+            }
+            write(options, out, output);
+            err.println(trials + " trials in " + elapsedMillis + " ms, seed " + seed);
+            if (options.containsKey("metrics")) {
+                err.print(SimulationMetrics.getDefault().dump());
+            }
+            return 0;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        } catch (IOException e) {
+            err.println(e);
+            return 1;
+        }
+    }
+
+    private static int runFloor(Map<String, String> options, PrintStream out, PrintStream err) {
+        try {
+            int[] retryCounts = intListOption(options, "retry", 0);
+            int[] betAmounts = intListOption(options, "bet", SimulationEngine.COVERED_NUMBERS);
+            long bankroll = longOption(options, "bankroll", 0);
+            List<FloorSimulation.Profile> profiles = new ArrayList<>();
+            for (String file : options.getOrDefault("series-file", "serie.txt").split(",")) {
+                List<Bet> bets = SeriesFile.read(Paths.get(file.trim()));
+                for (int retryCount : retryCounts) {
+                    for (int betAmount : betAmounts) {
+                        profiles.add(new FloorSimulation.Profile(file.trim(), bets, retryCount, betUnit(betAmount),
+                                bankroll));
+                    }
+                }
+            }
+            int tableCount = intOption(options, "tables", 1000);
+            int playersPerTable = intOption(options, "players", 6);
+            long spinsPerTable = longOption(options, "rounds", 10000);
+            int threads = intOption(options, "threads", Runtime.getRuntime().availableProcessors());
+            long seed = options.containsKey("seed") ? longOption(options, "seed", 0)
+                    : ThreadLocalRandom.current().nextLong();
+            RandomAlgorithm algorithm = RandomAlgorithm.fromName(options.getOrDefault("rng", "SPLITTABLE"));
+            if (threads < 1) {
+                throw new IllegalArgumentException("The threads must be at least 1");
+            }
+            refuseOptions(options, "floor", "attempt-limit", "variance-reduction", "precision", "confidence",
+                    "format", "checkpoint", "spins", "journal", "series");
+
+            long start = System.nanoTime();
+            FloorStatistics statistics;
+            try (ParallelSimulationEngine engine = new ParallelSimulationEngine(threads)) {
+                engine.setRandomAlgorithm(algorithm);
+                statistics = new FloorSimulation(engine).run(profiles, tableCount, playersPerTable, spinsPerTable,
+                        seed);
+            }
+            long elapsedMillis = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+
+            write(options, out, FloorSimulation.format(profiles, playersPerTable, spinsPerTable, statistics));
+            err.println(statistics.getSpins() + " spins and " + statistics.getBets() + " bets in " + elapsedMillis
+                    + " ms (" + statistics.getSpins() * 1000 / elapsedMillis + " spins/s, "
+                    + statistics.getBets() * 1000 / elapsedMillis + " bets/s), seed " + seed);
+            if (options.containsKey("metrics")) {
+                err.print(SimulationMetrics.getDefault().dump());
+            }
+            return 0;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        } catch (IOException e) {
+            err.println(e);
+            return 1;
+        }
+    }
+
+    private static int runOptimizer(Map<String, String> options, PrintStream out, PrintStream err) {
+        try {
+            List<Bet> bets = SeriesFile.read(Paths.get(options.getOrDefault("series-file", "serie.txt")));
+            int retryCount = intOption(options, "retry", 0);
+            long seriesCount = longOption(options, "series", 10000);
+            long candidates = longOption(options, "candidates", 100000);
+            int walkers = intOption(options, "walkers", 8);
+            int threads = intOption(options, "threads", Runtime.getRuntime().availableProcessors());
+            long seed = options.containsKey("seed") ? longOption(options, "seed", 0)
+                    : ThreadLocalRandom.current().nextLong();
+            RandomAlgorithm algorithm = RandomAlgorithm.fromName(options.getOrDefault("rng", "SPLITTABLE"));
+            String scoreName = options.getOrDefault("score", "exact");
+            if (threads < 1) {
+                throw new IllegalArgumentException("The threads must be at least 1");
+            }
+            if (bets.isEmpty()) {
+                throw new IllegalArgumentException("The series has no rows");
+            }
+
+            int rowCount = bets.size();
+            int[] spins = null;
+            if (options.containsKey("spins")) {
+                try (SpinSource source = SpinSource.open(Paths.get(options.get("spins")))) {
+                    spins = readSpins(source, scoreName.equals("sampled") ? seriesCount * rowCount : Long.MAX_VALUE);
+                }
+            }
+            LayoutScore score;
+            switch (scoreName) {
+            case "exact":
+                score = spins == null ? LayoutScore.exact(retryCount, rowCount)
+                        : LayoutScore.exact(retryCount, rowCount, LayoutScore.pocketProbabilities(spins));
+                break;
+            case "sampled":
+                if (spins == null) {
+                    spins = new int[Math.toIntExact(Math.multiplyExact(seriesCount, rowCount))];
+                    new Roulette(algorithm.create(seed)).spin(spins);
+                }
+                score = LayoutScore.sampled(retryCount, rowCount, spins);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown score: " + scoreName);
+            }
+
+            long start = System.nanoTime();
+            LayoutOptimizer.Result result;
+            try (ParallelSimulationEngine engine = new ParallelSimulationEngine(threads)) {
+                engine.setRandomAlgorithm(algorithm);
+                result = new LayoutOptimizer(engine).optimize(bets, score, candidates, walkers, seed);
+            }
+            long elapsedMillis = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+
+            write(options, out, LayoutOptimizer.format(result));
+            if (options.containsKey("save-series")) {
+                SeriesFile.write(Paths.get(options.get("save-series")), result.getBets());
+            }
+            err.println(result.getCandidates() + " candidates in " + elapsedMillis + " ms ("
+                    + result.getCandidates() * 1000 / elapsedMillis + "/s), seed " + seed);
+            if (options.containsKey("metrics")) {
+                err.print(SimulationMetrics.getDefault().dump());
+            }
+            return 0;
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        } catch (IOException e) {
+            err.println(e);
+            return 1;
+        }
+    }
+
+    private static int runExact(Map<String, String> options, PrintStream out, PrintStream err) {
+        try {
+            List<Bet> bets = SeriesFile.read(Paths.get(options.getOrDefault("series-file", "serie.txt")));
+            int retryCount = intOption(options, "retry", 0);
+            long seriesCount = longOption(options, "series", 1_000_000);
+            int betUnit = betUnit(intOption(options, "bet", SimulationEngine.COVERED_NUMBERS));
+            int threads = intOption(options, "threads", Runtime.getRuntime().availableProcessors());
+            long seed = options.containsKey("seed") ? longOption(options, "seed", 0)
+                    : ThreadLocalRandom.current().nextLong();
+            RandomAlgorithm algorithm = RandomAlgorithm.fromName(options.getOrDefault("rng", "SPLITTABLE"));
+            if (threads < 1) {
+                throw new IllegalArgumentException("The threads must be at least 1");
+            }
+            if (seriesCount < 0) {
+                throw new IllegalArgumentException("The series must not be negative");
+            }
+            if (intOption(options, "attempt-limit", 0) != 0
+                    || !options.getOrDefault("format", "text").equals("text")) {
+                throw new IllegalArgumentException("--exact evaluates whole series and writes a text report");
+            }
+
+            ExactResult result = ExactEvaluator.evaluate(bets, retryCount, betUnit);
+            long start = System.nanoTime();
+            ExactResult.CrossCheck check = null;
+            if (seriesCount > 0) {
+                try (ParallelSimulationEngine engine = new ParallelSimulationEngine(threads)) {
+                    engine.setRandomAlgorithm(algorithm);
+                    check = ExactEvaluator.crossCheck(engine, bets, retryCount, seriesCount, betUnit, seed);
+                }
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            write(options, out, ExactEvaluator.format(result, check));
+            if (check != null) {
+                err.println(seriesCount + " series cross-checked in " + elapsedMillis + " ms, seed " + seed);
+            }
+            if (options.containsKey("metrics")) {
+                err.print(SimulationMetrics.getDefault().dump());
+            }
+            return 0;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        } catch (IOException e) {
+            err.println(e);
+            return 1;
+        }
+    }
+
+    /**
+     * Reads at most the given spins of the source.
+     */
+    private static int[] readSpins(SpinSource source, long maxSpins) throws IOException {
+        int[] spins = new int[(int) Math.min(Math.max(source.remaining(), 1024), Math.min(maxSpins, 1 << 30))];
+        int count = 0;
+        while (count < maxSpins) {
+            if (count == spins.length) {
+                spins = Arrays.copyOf(spins, (int) Math.min(Math.min(maxSpins, 1 << 30), 2L * count));
+                if (count == spins.length) {
+                    break;
+                }
+            }
+            int read = source.read(spins, count, spins.length);
+            if (read < 0) {
+                break;
+            }
+            count += read;
+        }
+        return Arrays.copyOf(spins, count);
+    }
+
+    private static int serve(Map<String, String> options, PrintStream err) {
+        try {
+            int port = intOption(options, "port", 8080);
+            int threads = intOption(options, "threads", Runtime.getRuntime().availableProcessors());
+            int maxInFlight = intOption(options, "max-in-flight", SimulationServer.DEFAULT_MAX_IN_FLIGHT);
+            long timeout = longOption(options, "timeout", SimulationServer.DEFAULT_TIMEOUT_MILLIS);
+            long maxSeries = longOption(options, "max-series", SimulationServer.DEFAULT_MAX_SERIES);
+            long cacheMegabytes = longOption(options, "cache-mb", ResultCache.DEFAULT_MAX_BYTES >> 20);
+            if (threads < 1) {
+                throw new IllegalArgumentException("The threads must be at least 1");
+            }
+            ParallelSimulationEngine engine = new ParallelSimulationEngine(threads);
+            engine.setRandomAlgorithm(RandomAlgorithm.fromName(options.getOrDefault("rng", "SPLITTABLE")));
+            ResultCache cache = cacheMegabytes > 0 ? new ResultCache(cacheMegabytes << 20) : null;
+            SimulationServer server = new SimulationServer(new InetSocketAddress("localhost", port), engine,
+                    maxInFlight, timeout, maxSeries, cache);
+            CountDownLatch stopped = new CountDownLatch(1);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                engine.close();
+                stopped.countDown();
+            }));
+            SimulationMetrics.getDefault().register();
+            server.start();
+            err.println("Listening on http://localhost:" + server.getPort() + "/simulate");
+            stopped.await();
+            return 0;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return 2;
+        } catch (IOException e) {
+            err.println(e);
+            return 1;
+        } catch (JMException e) {
+            err.println(e);
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    private static void write(Map<String, String> options, PrintStream out, String output) throws IOException {
+        if (options.containsKey("output")) {
+            try (OutputStream stream = Files.newOutputStream(Paths.get(options.get("output")));
+                    PrintStream file = new PrintStream(stream, false, StandardCharsets.UTF_8.name())) {
+                file.println(output);
+            }
+        } else {
+            out.println(output);
+        }
+    }
+
+    static String format(String format, SimulationParameters parameters, SeriesStatistics statistics,
+            String locale) {
+        switch (format) {
+        case "csv":
+            return StatisticsFormat.CSV_HEADER + "\n" + StatisticsFormat.toCsv(parameters, statistics);
+        case "json":
+            return StatisticsFormat.toJson(parameters, statistics);
+        case "text":
+        default:
+            Messages.setLocale(Locale.forLanguageTag(locale.replace('_', '-')));
+            return SimulationReport.format(new SimulationResult(parameters.getBets(), parameters.getBetUnit(),
+                    parameters.getAttemptLimit(), statistics, null, null, null));
+        }
+    }
+
+    static String formatSweep(String format, List<ParameterSweep.Result> results) {
+        StringBuilder output = new StringBuilder();
+        switch (format) {
+        case "csv":
+            output.append("layout,").append(StatisticsFormat.CSV_HEADER);
+            for (ParameterSweep.Result result : results) {
+                output.append('\n').append(result.getLayoutIndex() + 1).append(',')
+                        .append(StatisticsFormat.toCsv(result.getParameters(), result.getStatistics()));
+            }
+            return output.toString();
+        case "json":
+            output.append('[');
+            for (int i = 0; i < results.size(); i++) {
+                ParameterSweep.Result result = results.get(i);
+                String json = StatisticsFormat.toJson(result.getParameters(), result.getStatistics());
+                output.append(i > 0 ? "," : "").append("{\"layout\":").append(result.getLayoutIndex() + 1)
+                        .append(',').append(json, 1, json.length());
+            }
+            return output.append(']').toString();
+        case "text":
+        default:
+            return ParameterSweep.formatTable(results);
+        }
+    }
+
+    /**
+     * Parses options of the form "--name value"; an option followed by another
+     * option, or by nothing, has the value "true".
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (!OPTIONS.contains(name)) {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(name, args[++i]);
+            } else {
+                options.put(name, "true");
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Returns the checkpoint of the --checkpoint option, null without it. A
+     * checkpointed run needs a seed, to be resumed with the same numbers.
+     */
+    static Checkpoint checkpointOption(Map<String, String> options) {
+        if (!options.containsKey("checkpoint")) {
+            return null;
+        }
+        if (!options.containsKey("seed")) {
+            throw new IllegalArgumentException("--checkpoint needs a --seed");
+        }
+        long interval = longOption(options, "checkpoint-interval", Checkpoint.DEFAULT_INTERVAL_MILLIS / 1000);
+        if (interval < 0 || interval > Long.MAX_VALUE / 1000) {
+            throw new IllegalArgumentException("Out of range for --checkpoint-interval: " + interval);
+        }
+        return new Checkpoint(Paths.get(options.get("checkpoint")), interval * 1000);
+    }
+
+    /**
+     * Refuses the given options, which the mode does not implement, rather than
+     * ignoring them.
+     */
+    static void refuseOptions(Map<String, String> options, String mode, String... names) {
+        for (String name : names) {
+            if (options.containsKey(name)) {
+                throw new IllegalArgumentException("--" + mode + " does not support --" + name);
+            }
+        }
+    }
+
+    private static String resumedText(Checkpoint checkpoint) {
+        return checkpoint != null && checkpoint.getResumedSeries() > 0
+                ? ", resumed after " + checkpoint.getResumedSeries() + " series"
+                : "";
+    }
+
+    /**
+     * Returns the amount bet on every covered number for the amount bet on the
+     * table, which must cover them all.
+     */
+    static int betUnit(int betAmount) {
+        if (betAmount < SimulationEngine.COVERED_NUMBERS) {
+            throw new IllegalArgumentException("The bet must be at least " + SimulationEngine.COVERED_NUMBERS);
+        }
+        return betAmount / SimulationEngine.COVERED_NUMBERS;
+    }
+
+    static int intOption(Map<String, String> options, String name, int defaultValue) {
+        long value = longOption(options, name, defaultValue);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Out of range for --" + name + ": " + value);
+        }
+        return (int) value;
+    }
+
+    static int[] intListOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return new int[] { defaultValue };
+        }
+        String[] values = value.split(",");
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = intOption(Collections.singletonMap(name, values[i].trim()), name, defaultValue);
+        }
+        return result;
+    }
+
+    static double doubleOption(Map<String, String> options, String name, double defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number for --" + name + ": " + value);
+        }
+    }
+
+    static long longOption(Map<String, String> options, String name, long defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.replace("_", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number for --" + name + ": " + value);
+        }
+    }
+}
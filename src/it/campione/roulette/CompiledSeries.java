@@ -0,0 +1,89 @@
+package it.campione.roulette;
+
+import java.util.List;
+
+/**
+ * Compact, immutable form of a series of excluded couples. Every row is a
+ * 37-bit mask of its losing numbers, so that the win test of a drawn number is
+ * a single bit test; "ignora" rows have the sign bit set. A compiled series can
+ * be shared by any number of threads.
+ *
+ * @author D. Campione
+ *
+ */
+public final class CompiledSeries {
+
+    /** Number of pockets of the European roulette wheel. */
+    public static final int POCKETS = 37;
+
+    /** Mask of the "ignora" rows. */
+    public static final long IGNORED_MASK = 1L << 63;
+
+    private final long[] masks;
+
+    private CompiledSeries(long[] masks) {
+        this.masks = masks;
+    }
+
+    public static CompiledSeries compile(List<Bet> bets) {
+        long[] masks = new long[bets.size()];
+        for (int i = 0; i < masks.length; i++) {
+            masks[i] = mask(bets.get(i));
+        }
+        return new CompiledSeries(masks);
+    }
+
+    /**
+     * Returns the mask of the losing numbers of a bet. Numbers outside the
+     * wheel are never drawn, hence they are left out of the mask.
+     */
+    public static long mask(Bet bet) {
+        if (bet.shouldIgnore()) {
+            return IGNORED_MASK;
+        }
+        return numberMask(bet.getBet1()) | numberMask(bet.getBet2());
+    }
+
+    private static long numberMask(int number) {
+        return number >= 0 && number < POCKETS ? 1L << number : 0;
+    }
+
+    public int getRowCount() {
+        return masks.length;
+    }
+
+    public long getMask(int row) {
+        return masks[row];
+    }
+
+    public long[] getMasks() {
+        return masks.clone();
+    }
+
+    public boolean isIgnored(int row) {
+        return masks[row] < 0;
+    }
+
+    public boolean isWinningNumber(int row, int number) {
+        return (masks[row] >>> number & 1L) == 0;
+    }
+
+    /**
+     * Returns the mean number of rows of a series that draw a losing number,
+     * all the rows being played, on a fair wheel.
+     */
+    public double getExpectedHits() {
+        int losingNumbers = 0;
+        for (int i = 0; i < masks.length; i++) {
+            losingNumbers += getLosingNumberCount(i);
+        }
+        return (double) losingNumbers / POCKETS;
+    }
+
+    /**
+     * Returns how many of the 37 numbers lose on the given row.
+     */
+    public int getLosingNumberCount(int row) {
+        return masks[row] < 0 ? 0 : Long.bitCount(masks[row]);
+    }
+}
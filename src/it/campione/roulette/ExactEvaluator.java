@@ -0,0 +1,106 @@
+package it.campione.roulette;
+
+import java.util.List;
+
+/**
+ * Exact evaluation of a series of excluded couples. Every played row loses
+ * with probability (losing numbers)/37, independently of the other rows, and
+ * the game stops after retry count + 1 losses; a dynamic programming over the
+ * number of losses and wins gives the exact distribution of a series, without
+ * playing it.
+ *
+ * @author D. Campione
+ *
+ */
+public class ExactEvaluator {
+
+    private ExactEvaluator() {
+    }
+
+    public static ExactResult evaluate(List<Bet> bets, int retryCount, int betUnit) {
+        return evaluate(CompiledSeries.compile(bets), retryCount, betUnit);
+    }
+
+    public static ExactResult evaluate(CompiledSeries series, int retryCount, int betUnit) {
+        if (retryCount < 0 || betUnit < 0) {
+            throw new IllegalArgumentException("Negative simulation parameter");
+        }
+        int rowCount = series.getRowCount();
+        // probabilities[losses][dots], losses = retryCount + 1 means stopped
+        double[][] probabilities = new double[retryCount + 2][rowCount + 1];
+        double[] firstFailure = new double[rowCount];
+        probabilities[0][0] = 1;
+        int maxDots = 0;
+
+        for (int i = 0; i < rowCount; i++) {
+            if (series.isIgnored(i)) {
+                continue;
+            }
+            double lossProbability = (double) series.getLosingNumberCount(i) / CompiledSeries.POCKETS;
+            double winProbability = 1 - lossProbability;
+
+            double noFailureYet = 0;
+            for (int dots = 0; dots <= maxDots; dots++) {
+                noFailureYet += probabilities[0][dots];
+            }
+            firstFailure[i] = noFailureYet * lossProbability;
+
+            // Walk backwards, so that every probability moves by one step only
+            for (int losses = retryCount; losses >= 0; losses--) {
+                double[] current = probabilities[losses];
+                double[] next = probabilities[losses + 1];
+                for (int dots = maxDots; dots >= 0; dots--) {
+                    double probability = current[dots];
+                    if (probability == 0) {
+                        continue;
+                    }
+                    current[dots] = 0;
+                    current[dots + 1] += probability * winProbability;
+                    next[dots] += probability * lossProbability;
+                }
+            }
+            maxDots++;
+        }
+        return new ExactResult(rowCount, retryCount, betUnit, probabilities, firstFailure);
+    }
+
+    /**
+     * Plays the series with the Monte Carlo engine and compares the outcome
+     * with the exact evaluation.
+     */
+    public static ExactResult.CrossCheck crossCheck(ParallelSimulationEngine engine, List<Bet> bets, int retryCount,
+            long seriesCount, int betUnit, long seed) {
+        SeriesStatistics statistics = engine.run(bets, retryCount, seriesCount, betUnit, seed);
+        return evaluate(bets, retryCount, betUnit).crossCheck(statistics);
+    }
+
+    /**
+     * Formats the exact figures of a series and, if given, the scores of a
+     * Monte Carlo run against them.
+     */
+    public static String format(ExactResult result, ExactResult.CrossCheck check) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Exact evaluation: %d rows, retry %d, bet %d%n", result.getRowCount(),
+                result.getRetryCount(), result.getBetUnit() * SimulationEngine.COVERED_NUMBERS));
+        text.append(String.format("Expected gain/loss per series: %.6f%n", result.getExpectedProfit()));
+        text.append(String.format("Gain/loss variance: %.6f (std.dev %.6f)%n", result.getProfitVariance(),
+                result.getProfitStandardDeviation()));
+        text.append(String.format("Expected points per series: %.6f%n", result.getExpectedDots()));
+        text.append(String.format("Ruin probability: %.8f%n", result.getRuinProbability()));
+        text.append(String.format("No failure: %.8f%n", result.getNoFailureProbability()));
+        text.append(String.format("%17s %12s%n", "first failure row", "probability"));
+        for (int i = 0; i < result.getRowCount(); i++) {
+            if (result.getFirstFailureProbability(i) > 0) {
+                text.append(String.format("%17d %12.8f%n", i + 1, result.getFirstFailureProbability(i)));
+            }
+        }
+        if (check != null) {
+            text.append(String.format("Monte Carlo cross-check on %d series (z-scores, within +/-3 expected):%n",
+                    check.getSeriesCount()));
+            text.append(String.format("  gain/loss %.3f, points %.3f, failure %.3f, ruin %.3f: %s",
+                    check.getProfitScore(), check.getDotsScore(), check.getFailureScore(), check.getRuinScore(),
+                    check.isConsistent(3) ? "consistent" : "NOT consistent"));
+        }
+        return text.toString().trim();
+    }
+}
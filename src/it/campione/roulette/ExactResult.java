@@ -0,0 +1,242 @@
+package it.campione.roulette;
+
+/**
+ * Exact distribution of a single series, computed by the
+ * {@link ExactEvaluator}, and the figures derived from it for any number of
+ * independent series.
+ *
+ * @author D. Campione
+ *
+ */
+public class ExactResult {
+
+    private final int rowCount;
+    private final int retryCount;
+    private final int betUnit;
+    private final double[][] probabilities;
+    private final double[] firstFailure;
+    private final double expectedProfit;
+    private final double profitVariance;
+    private final double expectedDots;
+    private final double dotsVariance;
+    private final double noFailureProbability;
+
+    ExactResult(int rowCount, int retryCount, int betUnit, double[][] probabilities, double[] firstFailure) {
+        this.rowCount = rowCount;
+        this.retryCount = retryCount;
+        this.betUnit = betUnit;
+        this.probabilities = probabilities;
+        this.firstFailure = firstFailure;
+
+        double profitSum = 0;
+        double profitSquares = 0;
+        double dotsSum = 0;
+        double dotsSquares = 0;
+        for (int losses = 0; losses < probabilities.length; losses++) {
+            for (int dots = 0; dots <= rowCount; dots++) {
+                double probability = probabilities[losses][dots];
+                double profit = profit(losses, dots);
+                profitSum += probability * profit;
+                profitSquares += probability * profit * profit;
+                dotsSum += probability * dots;
+                dotsSquares += probability * dots * dots;
+            }
+        }
+        double failures = 0;
+        for (double probability : firstFailure) {
+            failures += probability;
+        }
+        this.expectedProfit = profitSum;
+        this.profitVariance = Math.max(0, profitSquares - profitSum * profitSum);
+        this.expectedDots = dotsSum;
+        this.dotsVariance = Math.max(0, dotsSquares - dotsSum * dotsSum);
+        this.noFailureProbability = Math.max(0, 1 - failures);
+    }
+
+    private double profit(int losses, int dots) {
+        return (double) betUnit * (dots - SimulationEngine.COVERED_NUMBERS * losses);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public int getBetUnit() {
+        return betUnit;
+    }
+
+    /**
+     * Returns the probability that a series ends with the given losses and won
+     * rows.
+     */
+    public double getProbability(int losses, int dots) {
+        if (losses < 0 || losses >= probabilities.length || dots < 0 || dots > rowCount) {
+            return 0;
+        }
+        return probabilities[losses][dots];
+    }
+
+    /**
+     * Returns the probability that a series ends with the given losses.
+     */
+    public double getLossesProbability(int losses) {
+        if (losses < 0 || losses >= probabilities.length) {
+            return 0;
+        }
+        double probability = 0;
+        for (double value : probabilities[losses]) {
+            probability += value;
+        }
+        return probability;
+    }
+
+    public double getExpectedProfit() {
+        return expectedProfit;
+    }
+
+    public double getProfitVariance() {
+        return profitVariance;
+    }
+
+    public double getProfitStandardDeviation() {
+        return Math.sqrt(profitVariance);
+    }
+
+    public double getExpectedDots() {
+        return expectedDots;
+    }
+
+    public double getDotsVariance() {
+        return dotsVariance;
+    }
+
+    /**
+     * Returns the probability that the first loss of a series is on the given
+     * row.
+     */
+    public double getFirstFailureProbability(int row) {
+        return firstFailure[row];
+    }
+
+    public double[] getFirstFailureDistribution() {
+        return firstFailure.clone();
+    }
+
+    public double getNoFailureProbability() {
+        return noFailureProbability;
+    }
+
+    /**
+     * Returns the probability that a series uses up all its retries and is
+     * stopped: the ruin of the series.
+     */
+    public double getRuinProbability() {
+        return getLossesProbability(retryCount + 1);
+    }
+
+    public double getExpectedTotalProfit(long seriesCount) {
+        return expectedProfit * seriesCount;
+    }
+
+    public double getTotalProfitVariance(long seriesCount) {
+        return profitVariance * seriesCount;
+    }
+
+    /**
+     * Returns the probability of at least one loss in the given number of
+     * series.
+     */
+    public double getFailureProbability(long seriesCount) {
+        return 1 - Math.pow(noFailureProbability, seriesCount);
+    }
+
+    /**
+     * Compares the statistics of a Monte Carlo run of the same series with the
+     * exact figures.
+     */
+    public CrossCheck crossCheck(SeriesStatistics statistics) {
+        if (statistics.getRowCount() != rowCount || statistics.getRetryCount() != retryCount) {
+            throw new IllegalArgumentException("Statistics of a different series");
+        }
+        long n = statistics.getSeriesCount();
+        double failureProbability = 1 - noFailureProbability;
+        return new CrossCheck(n,
+                zScore(statistics.getMeanProfit(), expectedProfit, profitVariance, n),
+                zScore(statistics.getAverageDots(), expectedDots, dotsVariance, n),
+                zScore(fraction(statistics.getSeriesWithFailures(), n), failureProbability,
+                        failureProbability * (1 - failureProbability), n),
+                zScore(fraction(statistics.getStoppedSeries(), n), getRuinProbability(),
+                        getRuinProbability() * (1 - getRuinProbability()), n));
+    }
+
+    private static double fraction(long count, long n) {
+        return n > 0 ? (double) count / n : 0;
+    }
+
+    private static double zScore(double observed, double expected, double variance, long n) {
+        if (n == 0) {
+            return 0;
+        }
+        double standardError = Math.sqrt(variance / n);
+        if (standardError == 0) {
+            return observed == expected ? 0 : Double.POSITIVE_INFINITY;
+        }
+        return (observed - expected) / standardError;
+    }
+
+    /**
+     * Standard scores of the Monte Carlo estimates against the exact values: a
+     * correct engine gives scores within about +/-3 in nearly every run.
+     */
+    public static class CrossCheck {
+
+        private final long seriesCount;
+        private final double profitScore;
+        private final double dotsScore;
+        private final double failureScore;
+        private final double ruinScore;
+
+        CrossCheck(long seriesCount, double profitScore, double dotsScore, double failureScore, double ruinScore) {
+            this.seriesCount = seriesCount;
+            this.profitScore = profitScore;
+            this.dotsScore = dotsScore;
+            this.failureScore = failureScore;
+            this.ruinScore = ruinScore;
+        }
+
+        public long getSeriesCount() {
+            return seriesCount;
+        }
+
+        public double getProfitScore() {
+            return profitScore;
+        }
+
+        public double getDotsScore() {
+            return dotsScore;
+        }
+
+        public double getFailureScore() {
+            return failureScore;
+        }
+
+        public double getRuinScore() {
+            return ruinScore;
+        }
+
+        public boolean isConsistent(double maxScore) {
+            return Math.abs(profitScore) <= maxScore && Math.abs(dotsScore) <= maxScore
+                    && Math.abs(failureScore) <= maxScore && Math.abs(ruinScore) <= maxScore;
+        }
+
+        @Override
+        public String toString() {
+            return "CrossCheck[series=" + seriesCount + ", profit=" + profitScore + ", dots=" + dotsScore
+                    + ", failure=" + failureScore + ", ruin=" + ruinScore + "]";
+        }
+    }
+}
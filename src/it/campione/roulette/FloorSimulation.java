@@ -0,0 +1,261 @@
+package it.campione.roulette;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Simulation of a casino floor: many tables, each with its own wheel and its
+ * seats taken by players of the given profiles (layout, retry count, bet and
+ * bankroll), in turn. On every spin of a table each seated player bets the
+ * next row of the series, as in the application, and starts a new series
+ * after the last row or after the last retry; a player with a bankroll leaves
+ * the table when it no longer covers a bet, and the seat stays empty. The
+ * tables are played concurrently on the pool of a
+ * {@link ParallelSimulationEngine}, each with the random numbers of its
+ * index, and report their spins to the shared {@link FloorStatistics} every
+ * {@link #SPIN_BATCH} spins; since every total is a sum, a seeded run gives
+ * the same totals with any number of threads.
+ *
+ * @author D. Campione
+ *
+ */
+public class FloorSimulation {
+
+    /** Spins of a table drawn and reported at a time. */
+    static final int SPIN_BATCH = 256;
+
+    private final ParallelSimulationEngine engine;
+
+    public FloorSimulation(ParallelSimulationEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Plays the floor.
+     *
+     * @param profiles        the players; the seat p of the table t is taken by
+     *                        the profile (t * playersPerTable + p) modulo their
+     *                        number
+     * @param tableCount      the tables
+     * @param playersPerTable the seats of a table
+     * @param spinsPerTable   the spins of the session of every table
+     * @param seed            the seed of the run
+     * @return the totals, also by profile
+     */
+    public FloorStatistics run(List<Profile> profiles, int tableCount, int playersPerTable, long spinsPerTable,
+            long seed) {
+        if (profiles.isEmpty()) {
+            throw new IllegalArgumentException("No player profile");
+        }
+        if (tableCount < 0 || playersPerTable < 0 || spinsPerTable < 0) {
+            throw new IllegalArgumentException("Negative floor parameter");
+        }
+        FloorStatistics statistics = new FloorStatistics(tableCount, profiles.size());
+        SimulationMetrics metrics = SimulationMetrics.getDefault();
+        long start = metrics.getSimulationTimer().start();
+        Floor floor = new Floor(profiles.toArray(new Profile[0]), playersPerTable, spinsPerTable, seed,
+                engine.getRandomAlgorithm(), statistics);
+        if (tableCount > 0) {
+            engine.getPool().invoke(new TableTask(floor, 0, tableCount));
+        }
+        metrics.getSimulationTimer().stop(start);
+        long series = 0;
+        for (int p = 0; p < profiles.size(); p++) {
+            series += statistics.getPlayerSeries(p);
+        }
+        metrics.seriesPlayed(series, statistics.getSpins());
+        return statistics;
+    }
+
+    /**
+     * Writes the statistics as text.
+     */
+    public static String format(List<Profile> profiles, int playersPerTable, long spinsPerTable,
+            FloorStatistics statistics) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Tables: %d, players per table: %d, spins per table: %d%n",
+                statistics.getTableCount(), playersPerTable, spinsPerTable));
+        text.append(String.format("Spins: %d, bets: %d, amount bet: %d%n", statistics.getSpins(),
+                statistics.getBets(), statistics.getHandle()));
+        text.append(String.format("House gain: %d (%.4f%% of the amount bet)%n", statistics.getHouseProfit(),
+                100 * statistics.getHouseEdge()));
+        text.append(String.format("%-20s %5s %6s %10s %10s %10s %14s %12s %12s%n", "profile", "retry", "bet",
+                "bankroll", "players", "ruined", "mean gain", "worst", "best"));
+        for (int p = 0; p < profiles.size(); p++) {
+            Profile profile = profiles.get(p);
+            text.append(String.format("%-20s %5d %6d %10s %10d %10d %14.2f %12d %12d%n", profile.getName(),
+                    profile.getRetryCount(), profile.getBetUnit() * SimulationEngine.COVERED_NUMBERS,
+                    profile.getBankroll() > 0 ? Long.toString(profile.getBankroll()) : "-",
+                    statistics.getPlayers(p), statistics.getRuinedPlayers(p), statistics.getMeanPlayerProfit(p),
+                    statistics.getWorstPlayerProfit(p), statistics.getBestPlayerProfit(p)));
+        }
+        return text.toString();
+    }
+
+    /**
+     * A kind of player: the layout played, the retry count, the bet unit and
+     * the bankroll (0 = unlimited).
+     */
+    public static class Profile {
+
+        private final String name;
+        private final CompiledSeries series;
+        private final int retryCount;
+        private final int betUnit;
+        private final long bankroll;
+
+        public Profile(String name, List<Bet> bets, int retryCount, int betUnit, long bankroll) {
+            this.name = name;
+            this.series = CompiledSeries.compile(new ArrayList<>(bets));
+            this.retryCount = retryCount;
+            this.betUnit = betUnit;
+            this.bankroll = bankroll;
+            if (series.getRowCount() == 0) {
+                throw new IllegalArgumentException("The series of " + name + " has no rows");
+            }
+            if (retryCount < 0 || betUnit <= 0 || bankroll < 0) {
+                throw new IllegalArgumentException("Wrong parameter of " + name);
+            }
+            if (bankroll > 0 && bankroll < (long) betUnit * SimulationEngine.COVERED_NUMBERS) {
+                throw new IllegalArgumentException("The bankroll of " + name + " does not cover a bet");
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getRetryCount() {
+            return retryCount;
+        }
+
+        public int getBetUnit() {
+            return betUnit;
+        }
+
+        public long getBankroll() {
+            return bankroll;
+        }
+
+        /**
+         * Returns the amount bet on a row.
+         */
+        public int getStake() {
+            return betUnit * SimulationEngine.COVERED_NUMBERS;
+        }
+    }
+
+    /**
+     * State shared by all the tables of a run.
+     */
+    private static class Floor {
+
+        private final Profile[] profiles;
+        private final int playersPerTable;
+        private final long spinsPerTable;
+        private final long seed;
+        private final RandomAlgorithm randomAlgorithm;
+        private final FloorStatistics statistics;
+
+        Floor(Profile[] profiles, int playersPerTable, long spinsPerTable, long seed,
+                RandomAlgorithm randomAlgorithm, FloorStatistics statistics) {
+            this.profiles = profiles;
+            this.playersPerTable = playersPerTable;
+            this.spinsPerTable = spinsPerTable;
+            this.seed = seed;
+            this.randomAlgorithm = randomAlgorithm;
+            this.statistics = statistics;
+        }
+
+        void playTable(int table) {
+            Roulette roulette = new Roulette(randomAlgorithm.create(ParallelSimulationEngine.chunkSeed(seed, table)));
+            int seats = playersPerTable;
+            Profile[] players = new Profile[seats];
+            int[] profileIndexes = new int[seats];
+            int[] rows = new int[seats];
+            int[] losses = new int[seats];
+            long[] profits = new long[seats];
+            long[] series = new long[seats];
+            for (int p = 0; p < seats; p++) {
+                profileIndexes[p] = (int) (((long) table * seats + p) % profiles.length);
+                players[p] = profiles[profileIndexes[p]];
+            }
+            int[] numbers = new int[SPIN_BATCH];
+            for (long spun = 0; spun < spinsPerTable; spun += SPIN_BATCH) {
+                int count = (int) Math.min(SPIN_BATCH, spinsPerTable - spun);
+                roulette.spin(numbers, 0, count);
+                long bets = 0;
+                long wagered = 0;
+                long houseProfit = 0;
+                for (int k = 0; k < count; k++) {
+                    int number = numbers[k];
+                    for (int p = 0; p < seats; p++) {
+                        Profile player = players[p];
+                        if (player == null) {
+                            continue; // Ruined, the seat is empty
+                        }
+                        if (rows[p] == 0) {
+                            series[p]++;
+                        }
+                        long mask = player.series.getMask(rows[p]);
+                        if (mask >= 0) {
+                            int stake = player.getStake();
+                            bets++;
+                            wagered += stake;
+                            if ((mask >>> number & 1L) == 0) {
+                                profits[p] += player.betUnit;
+                                houseProfit -= player.betUnit;
+                            } else {
+                                profits[p] -= stake;
+                                houseProfit += stake;
+                                losses[p]++;
+                                if (player.bankroll > 0 && player.bankroll + profits[p] < stake) {
+                                    statistics.addPlayer(profileIndexes[p], profits[p], series[p], true);
+                                    players[p] = null;
+                                    continue;
+                                }
+                            }
+                        }
+                        if (++rows[p] == player.series.getRowCount() || losses[p] > player.retryCount) {
+                            rows[p] = 0;
+                            losses[p] = 0;
+                        }
+                    }
+                }
+                statistics.addSpins(count, bets, wagered, houseProfit);
+            }
+            for (int p = 0; p < seats; p++) {
+                if (players[p] != null) {
+                    statistics.addPlayer(profileIndexes[p], profits[p], series[p], false);
+                }
+            }
+            statistics.tableCompleted();
+        }
+    }
+
+    private static class TableTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Floor floor;
+        private final int fromTable;
+        private final int toTable;
+
+        TableTask(Floor floor, int fromTable, int toTable) {
+            this.floor = floor;
+            this.fromTable = fromTable;
+            this.toTable = toTable;
+        }
+
+        @Override
+        protected void compute() {
+            if (toTable - fromTable == 1) {
+                floor.playTable(fromTable);
+                return;
+            }
+            int middle = (fromTable + toTable) >>> 1;
+            invokeAll(new TableTask(floor, fromTable, middle), new TableTask(floor, middle, toTable));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package it.campione.roulette;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals of a casino floor simulation (see {@link FloorSimulation}), updated
+ * concurrently by all the tables. Every counter is a {@link LongAdder} or a
+ * {@link LongAccumulator}, whose cells are striped across the threads, so the
+ * tables do not contend on a shared total; the counters can be read at any
+ * time, also while the tables are playing, and are exact once the run is over.
+ * The totals of the players are also kept by profile.
+ *
+ * @author D. Campione
+ *
+ */
+public class FloorStatistics {
+
+    private final int tableCount;
+    private final int profileCount;
+    private final LongAdder spins = new LongAdder();
+    private final LongAdder bets = new LongAdder();
+    private final LongAdder handle = new LongAdder();
+    private final LongAdder houseProfit = new LongAdder();
+    private final LongAdder completedTables = new LongAdder();
+    private final LongAdder[] players;
+    private final LongAdder[] playerProfits;
+    private final LongAdder[] playerSeries;
+    private final LongAdder[] ruinedPlayers;
+    private final LongAccumulator[] worstPlayerProfits;
+    private final LongAccumulator[] bestPlayerProfits;
+
+    public FloorStatistics(int tableCount, int profileCount) {
+        this.tableCount = tableCount;
+        this.profileCount = profileCount;
+        this.players = adders(profileCount);
+        this.playerProfits = adders(profileCount);
+        this.playerSeries = adders(profileCount);
+        this.ruinedPlayers = adders(profileCount);
+        this.worstPlayerProfits = new LongAccumulator[profileCount];
+        this.bestPlayerProfits = new LongAccumulator[profileCount];
+        for (int p = 0; p < profileCount; p++) {
+            worstPlayerProfits[p] = new LongAccumulator(Math::min, Long.MAX_VALUE);
+            bestPlayerProfits[p] = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        }
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Records the spins of a table since its last call.
+     *
+     * @param spinCount the spins
+     * @param betCount  the bets placed on them, one per player and played row
+     * @param wagered   the amount of the bets
+     * @param profit    the gain/loss of the house on them
+     */
+    public void addSpins(long spinCount, long betCount, long wagered, long profit) {
+        spins.add(spinCount);
+        bets.add(betCount);
+        handle.add(wagered);
+        houseProfit.add(profit);
+    }
+
+    /**
+     * Records a player leaving the table, at the end of the session or at the
+     * ruin.
+     *
+     * @param profile the index of the profile of the player
+     * @param profit  the final gain/loss of the player
+     * @param series  the series the player started
+     * @param ruined  true if the player no longer covered a bet
+     */
+    public void addPlayer(int profile, long profit, long series, boolean ruined) {
+        players[profile].increment();
+        playerProfits[profile].add(profit);
+        playerSeries[profile].add(series);
+        if (ruined) {
+            ruinedPlayers[profile].increment();
+        }
+        worstPlayerProfits[profile].accumulate(profit);
+        bestPlayerProfits[profile].accumulate(profit);
+    }
+
+    public void tableCompleted() {
+        completedTables.increment();
+    }
+
+    public int getTableCount() {
+        return tableCount;
+    }
+
+    public long getCompletedTables() {
+        return completedTables.sum();
+    }
+
+    public int getProfileCount() {
+        return profileCount;
+    }
+
+    public long getSpins() {
+        return spins.sum();
+    }
+
+    public long getBets() {
+        return bets.sum();
+    }
+
+    /**
+     * Returns the total amount bet by the players.
+     */
+    public long getHandle() {
+        return handle.sum();
+    }
+
+    public long getHouseProfit() {
+        return houseProfit.sum();
+    }
+
+    /**
+     * Returns the share of the amount bet kept by the house, 1/37 in the long
+     * run on a fair wheel.
+     */
+    public double getHouseEdge() {
+        long wagered = handle.sum();
+        return wagered > 0 ? (double) houseProfit.sum() / wagered : 0;
+    }
+
+    /**
+     * Returns the players of a profile that left their table.
+     */
+    public long getPlayers(int profile) {
+        return players[profile].sum();
+    }
+
+    public long getPlayerProfit(int profile) {
+        return playerProfits[profile].sum();
+    }
+
+    public double getMeanPlayerProfit(int profile) {
+        long count = players[profile].sum();
+        return count > 0 ? (double) playerProfits[profile].sum() / count : 0;
+    }
+
+    public long getPlayerSeries(int profile) {
+        return playerSeries[profile].sum();
+    }
+
+    public long getRuinedPlayers(int profile) {
+        return ruinedPlayers[profile].sum();
+    }
+
+    /**
+     * Returns the lowest final gain/loss of a player of the profile, 0 when
+     * none left the table.
+     */
+    public long getWorstPlayerProfit(int profile) {
+        return players[profile].sum() > 0 ? worstPlayerProfits[profile].get() : 0;
+    }
+
+    public long getBestPlayerProfit(int profile) {
+        return players[profile].sum() > 0 ? bestPlayerProfits[profile].get() : 0;
+    }
+}
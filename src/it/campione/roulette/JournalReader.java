@@ -0,0 +1,281 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the records of a journal written by the {@link JournalWriter}, segment
+ * after segment, into reusable fields: {@link #next()} moves to the next
+ * record, whose fields are then given by the getters of its type. A segment
+ * whose last record is incomplete or does not match its CRC, as after a crash,
+ * ends at that record and is counted as damaged. A reader must be used by a
+ * single thread.
+ *
+ * @author D. Campione
+ *
+ */
+public class JournalReader implements AutoCloseable {
+
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+
+    private final List<Path> segments = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private FileChannel channel;
+    private int nextSegment;
+    private int damagedSegments;
+    private long records;
+
+    private byte type;
+    private long time;
+    private int retryCount;
+    private int betUnit;
+    private int attemptLimit;
+    private long seriesCount;
+    private long seriesIndex;
+    private int profit;
+    private int dots;
+    private int losses;
+    private int rowCount;
+    private long[] masks = new long[0];
+    private int[] spins = new int[0];
+    private byte[] outcomes = new byte[0];
+
+    /**
+     * Opens the journal of the given directory.
+     */
+    public JournalReader(Path directory) throws IOException {
+        int last = JournalWriter.lastSegmentIndex(directory);
+        for (int i = 0; i <= last; i++) {
+            Path segment = JournalWriter.segmentPath(directory, i);
+            if (Files.isRegularFile(segment)) {
+                segments.add(segment);
+            }
+        }
+        buffer.limit(0);
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false at the end of the journal
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (channel == null) {
+                if (nextSegment == segments.size()) {
+                    return false;
+                }
+                openSegment(segments.get(nextSegment++));
+            }
+            if (!fill(JournalWriter.RECORD_HEADER_SIZE)) {
+                endSegment(buffer.hasRemaining());
+                continue;
+            }
+            int length = buffer.getInt(buffer.position());
+            int checksum = buffer.getInt(buffer.position() + 4);
+            if (length <= 0 || length > channel.size() || !fill(JournalWriter.RECORD_HEADER_SIZE + length)) {
+                endSegment(true);
+                continue;
+            }
+            int start = buffer.position() + JournalWriter.RECORD_HEADER_SIZE;
+            crc.reset();
+            crc.update(buffer.array(), start, length);
+            if ((int) crc.getValue() != checksum) {
+                endSegment(true);
+                continue;
+            }
+            buffer.position(start);
+            ByteBuffer payload = buffer.slice();
+            payload.limit(length);
+            buffer.position(start + length);
+            parse(payload);
+            records++;
+            return true;
+        }
+    }
+
+    private void openSegment(Path segment) throws IOException {
+        channel = FileChannel.open(segment, StandardOpenOption.READ);
+        ByteBuffer header = BinaryFormat.readHeader(channel);
+        if (header.getShort(6) != BinaryFormat.JOURNAL) {
+            channel.close();
+            channel = null;
+            throw new IOException("Not a journal segment: " + segment);
+        }
+        channel.position(BinaryFormat.HEADER_SIZE);
+        buffer.clear().limit(0);
+    }
+
+    private void endSegment(boolean damaged) throws IOException {
+        if (damaged) {
+            damagedSegments++;
+        }
+        channel.close();
+        channel = null;
+        buffer.clear().limit(0);
+    }
+
+    /**
+     * Reads until the given bytes are in the buffer, and returns false if the
+     * segment ends before.
+     */
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        if (buffer.capacity() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(bytes, 2 * buffer.capacity()));
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    private void parse(ByteBuffer payload) throws IOException {
+        type = payload.get();
+        if (type == JournalWriter.RUN_RECORD) {
+            time = payload.getLong();
+            retryCount = payload.getInt();
+            betUnit = payload.getInt();
+            attemptLimit = payload.getInt();
+            seriesCount = payload.getLong();
+            setRowCount(payload.getInt(), payload.remaining() / 8);
+            for (int i = 0; i < rowCount; i++) {
+                masks[i] = payload.getLong();
+            }
+        } else if (type == JournalWriter.SERIES_RECORD) {
+            seriesIndex = payload.getLong();
+            profit = payload.getInt();
+            dots = payload.getInt();
+            losses = payload.getInt();
+            setRowCount(payload.getInt(), payload.remaining() / 2);
+            for (int i = 0; i < rowCount; i++) {
+                spins[i] = payload.get() & 0xFF;
+                outcomes[i] = payload.get();
+            }
+        } else {
+            throw new IOException("Unknown journal record: " + type);
+        }
+    }
+
+    private void setRowCount(int count, int available) throws IOException {
+        if (count < 0 || count != available) {
+            throw new IOException("Malformed journal record of " + count + " rows");
+        }
+        rowCount = count;
+        if (masks.length < count) {
+            masks = new long[count];
+            spins = new int[count];
+            outcomes = new byte[count];
+        }
+    }
+
+    /**
+     * Returns the type of the record, {@link JournalWriter#RUN_RECORD} or
+     * {@link JournalWriter#SERIES_RECORD}.
+     */
+    public byte getType() {
+        return type;
+    }
+
+    /**
+     * Returns the records read so far.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Returns the segments read so far that ended with a damaged record.
+     */
+    public int getDamagedSegments() {
+        return damagedSegments;
+    }
+
+    /**
+     * Returns the start of the run, in milliseconds since the epoch.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public int getBetUnit() {
+        return betUnit;
+    }
+
+    public int getAttemptLimit() {
+        return attemptLimit;
+    }
+
+    public long getSeriesCount() {
+        return seriesCount;
+    }
+
+    /**
+     * Returns the rows of the series of the record.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the mask of the losing numbers of a row of the run (see
+     * {@link CompiledSeries#mask}).
+     */
+    public long getMask(int row) {
+        return masks[row];
+    }
+
+    public long getSeriesIndex() {
+        return seriesIndex;
+    }
+
+    public int getProfit() {
+        return profit;
+    }
+
+    public int getDots() {
+        return dots;
+    }
+
+    public int getLosses() {
+        return losses;
+    }
+
+    public int getSpin(int row) {
+        return spins[row];
+    }
+
+    public byte getOutcome(int row) {
+        return outcomes[row];
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
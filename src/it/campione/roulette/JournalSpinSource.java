@@ -0,0 +1,41 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+
+/**
+ * {@link SpinSource} over the spins of the series of a journal (see
+ * {@link JournalReader}), in the order they were recorded, so that the
+ * recorded series can be replayed or played with another layout.
+ *
+ * @author D. Campione
+ *
+ */
+final class JournalSpinSource implements SpinSource {
+
+    private final JournalReader reader;
+    private int row;
+
+    JournalSpinSource(JournalReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public int read(int[] out, int from, int to) throws IOException {
+        while (row == reader.getRowCount() || reader.getType() != JournalWriter.SERIES_RECORD) {
+            if (!reader.next()) {
+                return -1;
+            }
+            row = 0;
+        }
+        int count = Math.min(to - from, reader.getRowCount() - row);
+        for (int i = 0; i < count; i++) {
+            out[from + i] = reader.getSpin(row++);
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,458 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the series played: the drawn number and the outcome
+ * of every row, for audit and replay (see {@link JournalReader}). The journal
+ * is a directory of segment files named {@code journal-NNNNNN.rlj}, each with
+ * the header of the {@link BinaryFormat} (kind journal, count = index of the
+ * segment) followed by records (big-endian):
+ *
+ * <pre>
+ * int   length  bytes of the payload
+ * int   crc     CRC-32 of the payload
+ * byte  type    1 = run, 2 = series
+ * run:    long time (ms), int retry count, int bet unit, int attempt limit,
+ *         long series count, int rows, long mask of every row
+ * series: long index, int gain/loss, int dots, int losses, int rows,
+ *         byte number and byte outcome ({@link SeriesPlayer#WIN}...) per row
+ * </pre>
+ *
+ * The records are encoded by the simulation thread into direct buffers, which
+ * a writer thread writes through a {@link FileChannel}: a buffer is handed
+ * over when full, or when it has waited for the flush interval, and all the
+ * buffers waiting are written together and forced to the disk once (group
+ * commit). The simulation thread waits for the disk only when all the buffers
+ * are waiting to be written. A new segment is started before a write that
+ * would make the current one exceed the segment size, and every writer starts
+ * a new segment after the existing ones. A record is never split between
+ * segments, so a crash can only leave an incomplete last record, which the
+ * reader detects with its length and CRC.
+ *
+ * @author D. Campione
+ *
+ */
+public class JournalWriter implements AutoCloseable {
+
+    public static final byte RUN_RECORD = 1;
+    public static final byte SERIES_RECORD = 2;
+
+    /** Bytes before the payload of a record: length and CRC. */
+    static final int RECORD_HEADER_SIZE = 8;
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 200;
+
+    /** Smallest buffer, with room for the fixed fields of any record. */
+    static final int MIN_BUFFER_SIZE = 1024;
+
+    /** Buffers that can be filled or waiting to be written at a time. */
+    static final int BUFFERS = 4;
+
+    static final String SEGMENT_PREFIX = "journal-";
+    static final String SEGMENT_SUFFIX = ".rlj";
+
+    private final Path directory;
+    private final long segmentSize;
+    private final long flushIntervalNanos;
+    private final boolean force;
+    private final BlockingQueue<Batch> freeBatches = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<Batch> fullBatches = new ArrayBlockingQueue<>(BUFFERS + 1);
+    private final Thread writer;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer payload;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** The batch being filled, guarded by the lock. */
+    private Batch current;
+    private long appendedRecords;
+    private volatile long writtenRecords;
+    private volatile IOException failure;
+    private volatile boolean closing;
+
+    // Used by the writer thread only
+    private FileChannel channel;
+    private int segmentIndex;
+    private long segmentBytes;
+
+    /**
+     * Opens a journal with the default sizes, forcing every group of writes to
+     * the disk.
+     */
+    public JournalWriter(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_BUFFER_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS, true);
+    }
+
+    /**
+     * Opens a journal in the given directory, created if missing.
+     *
+     * @param directory           the directory of the segments
+     * @param segmentSize         the size after which a new segment is started
+     * @param bufferSize          the size of every buffer, the largest record
+     * @param flushIntervalMillis the longest time a record waits in a buffer
+     * @param force               true to force every group of writes to the
+     *                            disk, false to leave it to the operating system
+     */
+    public JournalWriter(Path directory, long segmentSize, int bufferSize, long flushIntervalMillis, boolean force)
+            throws IOException {
+        if (segmentSize <= BinaryFormat.HEADER_SIZE || bufferSize < MIN_BUFFER_SIZE || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Wrong journal parameter");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.force = force;
+        this.payload = ByteBuffer.allocate(bufferSize - RECORD_HEADER_SIZE);
+        for (int i = 0; i < BUFFERS; i++) {
+            freeBatches.add(new Batch(ByteBuffer.allocateDirect(bufferSize)));
+        }
+        Files.createDirectories(directory);
+        this.segmentIndex = lastSegmentIndex(directory);
+        openSegment();
+        this.current = freeBatches.poll();
+        this.writer = new Thread(this::writeBatches, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Returns the index of the last segment of the directory, -1 if none.
+     */
+    static int lastSegmentIndex(Path directory) throws IOException {
+        int last = -1;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : segments) {
+                String name = segment.getFileName().toString();
+                try {
+                    last = Math.max(last, Integer.parseInt(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not a segment
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Deletes the oldest segments of the directory, if any, until the others
+     * take at most the given bytes.
+     */
+    public static void prune(Path directory, long maxBytes) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        int last = lastSegmentIndex(directory);
+        long[] sizes = new long[last + 1];
+        long total = 0;
+        for (int i = 0; i <= last; i++) {
+            Path segment = segmentPath(directory, i);
+            if (Files.isRegularFile(segment)) {
+                sizes[i] = Files.size(segment);
+                total += sizes[i];
+            }
+        }
+        for (int i = 0; i <= last && total > maxBytes; i++) {
+            if (Files.deleteIfExists(segmentPath(directory, i))) {
+                total -= sizes[i];
+            }
+        }
+    }
+
+    /**
+     * Records the start of a run of the given series.
+     */
+    public void startRun(List<Bet> bets, int retryCount, int betUnit, int attemptLimit, long seriesCount)
+            throws IOException {
+        lock.lock();
+        try {
+            payload.clear();
+            payload.put(RUN_RECORD).putLong(System.currentTimeMillis()).putInt(retryCount).putInt(betUnit)
+                    .putInt(attemptLimit).putLong(seriesCount).putInt(bets.size());
+            checkRoom(bets.size() * 8);
+            for (Bet bet : bets) {
+                payload.putLong(CompiledSeries.mask(bet));
+            }
+            append();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the series just played by the player.
+     *
+     * @param index the index of the series in its run
+     */
+    public void appendSeries(long index, SeriesPlayer player) throws IOException {
+        lock.lock();
+        try {
+            int rowCount = player.getRowCount();
+            payload.clear();
+            payload.put(SERIES_RECORD).putLong(index).putInt(player.getProfit()).putInt(player.getDots())
+                    .putInt(player.getLosses()).putInt(rowCount);
+            checkRoom(2 * rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                payload.put((byte) player.getSpin(i)).put(player.getOutcome(i));
+            }
+            append();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkRoom(int bytes) {
+        if (bytes > payload.remaining()) {
+            throw new IllegalArgumentException("Record larger than the journal buffers");
+        }
+    }
+
+    /**
+     * Copies the payload, framed, into the current batch, handing the batch
+     * over first if it is full.
+     */
+    private void append() throws IOException {
+        checkFailure();
+        payload.flip();
+        int length = payload.remaining();
+        if (current.buffer.remaining() < RECORD_HEADER_SIZE + length) {
+            handOver();
+        }
+        crc.reset();
+        crc.update(payload.array(), 0, length);
+        if (current.records == 0) {
+            current.firstRecordNanos = System.nanoTime();
+        }
+        current.buffer.putInt(length).putInt((int) crc.getValue()).put(payload);
+        current.records++;
+        appendedRecords++;
+    }
+
+    /**
+     * Queues the current batch for writing and takes a free one, waiting if
+     * all of them are queued. Called holding the lock.
+     */
+    private void handOver() throws IOException {
+        fullBatches.add(current);
+        try {
+            current = freeBatches.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            current = null;
+            throw new InterruptedIOException("Interrupted while waiting for the journal");
+        }
+    }
+
+    /**
+     * Returns the records appended so far.
+     */
+    public long getAppendedRecords() {
+        lock.lock();
+        try {
+            return appendedRecords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the records written so far, and forced to the disk if so
+     * requested.
+     */
+    public long getWrittenRecords() {
+        return writtenRecords;
+    }
+
+    /**
+     * Writes all the records appended so far and waits for them.
+     */
+    public void flush() throws IOException {
+        long target;
+        lock.lock();
+        try {
+            checkFailure();
+            target = appendedRecords;
+            if (current.records > 0) {
+                handOver();
+            }
+        } finally {
+            lock.unlock();
+        }
+        while (writtenRecords < target) {
+            checkFailure();
+            synchronized (fullBatches) {
+                try {
+                    fullBatches.wait(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while flushing the journal");
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("The journal could not be written", failure);
+        }
+    }
+
+    /**
+     * Body of the writer thread: writes the full batches as they come, and the
+     * current one when its oldest record has waited for the flush interval.
+     * The current batch is only taken if the lock is free: a thread holding it
+     * is appending, and hands the batch over itself when it is full, possibly
+     * waiting for this thread to free one.
+     */
+    private void writeBatches() {
+        long pollNanos = Math.max(flushIntervalNanos / 4, TimeUnit.MILLISECONDS.toNanos(1));
+        try {
+            while (!closing || !fullBatches.isEmpty()) {
+                Batch batch = fullBatches.poll(pollNanos, TimeUnit.NANOSECONDS);
+                if (batch == null) {
+                    if (lock.tryLock()) {
+                        try {
+                            if (current != null && current.records > 0
+                                    && System.nanoTime() - current.firstRecordNanos >= flushIntervalNanos) {
+                                Batch free = freeBatches.poll();
+                                if (free != null) {
+                                    batch = current;
+                                    current = free;
+                                }
+                            }
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                    if (batch == null) {
+                        continue;
+                    }
+                }
+                long records = batch.records;
+                write(batch);
+                // Group commit: everything waiting goes with a single force
+                while ((batch = fullBatches.poll()) != null) {
+                    records += batch.records;
+                    write(batch);
+                }
+                if (force) {
+                    channel.force(false);
+                }
+                writtenRecords += records;
+                synchronized (fullBatches) {
+                    fullBatches.notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        } catch (IOException e) {
+            failure = e;
+            // Keep recycling the buffers, so that the simulation never waits forever
+            while (!closing) {
+                try {
+                    Batch batch = fullBatches.poll(pollNanos, TimeUnit.NANOSECONDS);
+                    if (batch != null) {
+                        batch.clear();
+                        freeBatches.add(batch);
+                    }
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+            }
+        } finally {
+            synchronized (fullBatches) {
+                fullBatches.notifyAll();
+            }
+        }
+    }
+
+    private void write(Batch batch) throws IOException {
+        ByteBuffer buffer = batch.buffer;
+        buffer.flip();
+        if (segmentBytes > BinaryFormat.HEADER_SIZE && segmentBytes + buffer.remaining() > segmentSize) {
+            if (force) {
+                channel.force(false);
+            }
+            channel.close();
+            openSegment();
+        }
+        while (buffer.hasRemaining()) {
+            segmentBytes += channel.write(buffer);
+        }
+        batch.clear();
+        freeBatches.add(batch);
+    }
+
+    private void openSegment() throws IOException {
+        segmentIndex++;
+        channel = FileChannel.open(segmentPath(directory, segmentIndex), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE_NEW);
+        ByteBuffer header = ByteBuffer.allocate(BinaryFormat.HEADER_SIZE);
+        BinaryFormat.putHeader(header, BinaryFormat.JOURNAL, segmentIndex);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        segmentBytes = BinaryFormat.HEADER_SIZE;
+    }
+
+    /**
+     * Writes the records appended so far, stops the writer thread and closes
+     * the segment.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            closing = true;
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                writer.interrupt();
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * A buffer of whole records.
+     */
+    private static class Batch {
+
+        private final ByteBuffer buffer;
+        private int records;
+        private long firstRecordNanos;
+
+        Batch(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void clear() {
+            buffer.clear();
+            records = 0;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package it.campione.roulette;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Searches for the layout of excluded couples with the best
+ * {@link LayoutScore}, keeping the number of rows and of "ignora" rows of the
+ * start layout. Every walker starts from that layout and tries candidates that
+ * change one number of a couple or move an "ignora" row, each scored
+ * incrementally from the first row it changes, with late acceptance hill
+ * climbing: a candidate is taken if it is not worse than the current layout
+ * or than the current layout of {@link #HISTORY} candidates before, so the
+ * search can cross plateaus and small valleys without a temperature to tune.
+ * <p>
+ * The walkers run in parallel on the pool of a {@link ParallelSimulationEngine},
+ * each with the random numbers of its index, and the best layout of the
+ * walker with the lowest index wins a tie, so a seeded search gives the same
+ * layout with any number of threads. On a fair wheel every layout with the
+ * same rows played scores the same: the search is useful with the pocket
+ * probabilities or the spins of a real wheel, and on sampled spins it also
+ * fits their noise, so its layout should be checked on other spins.
+ *
+ * @author D. Campione
+ *
+ */
+public class LayoutOptimizer {
+
+    /** Length of the late acceptance history. */
+    static final int HISTORY = 64;
+
+    private final ParallelSimulationEngine engine;
+
+    public LayoutOptimizer(ParallelSimulationEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Runs the search.
+     *
+     * @param start      the layout the walkers start from
+     * @param score      the score of the layouts, with the retry count
+     * @param candidates how many candidates every walker scores
+     * @param walkers    how many walkers search in parallel
+     * @param seed       the seed of the search
+     * @return the best layout found, the start one if none is better
+     */
+    public Result optimize(List<Bet> start, LayoutScore score, long candidates, int walkers, long seed) {
+        if (start.size() != score.getRowCount()) {
+            throw new IllegalArgumentException("The score is for " + score.getRowCount() + " rows");
+        }
+        if (candidates < 0 || walkers < 1) {
+            throw new IllegalArgumentException("Negative optimizer parameter");
+        }
+        SimulationMetrics metrics = SimulationMetrics.getDefault();
+        long begin = metrics.getSimulationTimer().start();
+        Search search = new Search(start, score, candidates, seed, engine.getRandomAlgorithm());
+        Result result = engine.getPool().invoke(new WalkerTask(search, 0, walkers));
+        metrics.getSimulationTimer().stop(begin);
+        return result;
+    }
+
+    /**
+     * Writes the result as text.
+     */
+    public static String format(Result result) {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Mean gain/loss per series (bet 35): start %.6f, best %.6f%n",
+                result.getStartScore(), result.getScore()));
+        text.append(String.format("Candidates scored: %d, accepted: %d%n", result.getCandidates(),
+                result.getAccepted()));
+        text.append(String.format("Rows changed: %d%n", result.getChangedRows()));
+        for (Bet bet : result.getBets()) {
+            text.append(bet).append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    /**
+     * The best layout of a search.
+     */
+    public static class Result {
+
+        private final List<Bet> startBets;
+        private final List<Bet> bets;
+        private final double startScore;
+        private final double score;
+        private final long candidates;
+        private final long accepted;
+
+        Result(List<Bet> startBets, List<Bet> bets, double startScore, double score, long candidates,
+                long accepted) {
+            this.startBets = startBets;
+            this.bets = bets;
+            this.startScore = startScore;
+            this.score = score;
+            this.candidates = candidates;
+            this.accepted = accepted;
+        }
+
+        public List<Bet> getBets() {
+            return bets;
+        }
+
+        public double getStartScore() {
+            return startScore;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * Returns how many candidates all the walkers scored.
+         */
+        public long getCandidates() {
+            return candidates;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public int getChangedRows() {
+            int changed = 0;
+            for (int i = 0; i < bets.size(); i++) {
+                if (!bets.get(i).equals(startBets.get(i))) {
+                    changed++;
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Keeps the better of two results, this one on a tie, and adds up
+         * their counts.
+         */
+        Result merge(Result other) {
+            Result best = other.score > score ? other : this;
+            return new Result(startBets, best.bets, startScore, best.score, candidates + other.candidates,
+                    accepted + other.accepted);
+        }
+    }
+
+    /**
+     * State shared by all the walkers of a search.
+     */
+    private static class Search {
+
+        private final List<Bet> startBets;
+        private final LayoutScore score;
+        private final long candidates;
+        private final long seed;
+        private final RandomAlgorithm randomAlgorithm;
+
+        Search(List<Bet> startBets, LayoutScore score, long candidates, long seed,
+                RandomAlgorithm randomAlgorithm) {
+            this.startBets = new ArrayList<>(startBets);
+            this.score = score;
+            this.candidates = candidates;
+            this.seed = seed;
+            this.randomAlgorithm = randomAlgorithm;
+        }
+
+        Result walk(int walker) {
+            RandomSource random = randomAlgorithm.create(ParallelSimulationEngine.chunkSeed(seed, walker));
+            LayoutScore walkerScore = score.copy();
+            int rowCount = startBets.size();
+            int[] first = new int[rowCount];
+            int[] second = new int[rowCount];
+            long[] masks = new long[rowCount];
+            int ignoredCount = 0;
+            for (int i = 0; i < rowCount; i++) {
+                Bet bet = startBets.get(i);
+                first[i] = bet.getBet1();
+                second[i] = bet.getBet2();
+                masks[i] = CompiledSeries.mask(bet);
+                if (bet.shouldIgnore()) {
+                    ignoredCount++;
+                }
+            }
+            boolean canRenumber = ignoredCount < rowCount;
+            boolean canMoveIgnored = ignoredCount > 0 && canRenumber;
+
+            double startScore = walkerScore.reset(masks);
+            double current = startScore;
+            double best = startScore;
+            int[] bestFirst = first.clone();
+            int[] bestSecond = second.clone();
+            double[] history = new double[HISTORY];
+            Arrays.fill(history, startScore);
+            long accepted = 0;
+            long scored = 0;
+
+            while (scored < candidates && canRenumber) {
+                int row;
+                int other = -1;
+                int oldNumber = 0;
+                boolean firstNumber = false;
+                if (canMoveIgnored && random.nextInt(4) == 0) {
+                    // Swap an "ignora" row with a played one
+                    row = random.nextInt(rowCount);
+                    other = random.nextInt(rowCount);
+                    if ((masks[row] < 0) == (masks[other] < 0)) {
+                        continue;
+                    }
+                    swap(first, second, masks, row, other);
+                } else {
+                    row = random.nextInt(rowCount);
+                    if (masks[row] < 0) {
+                        continue;
+                    }
+                    firstNumber = random.nextInt(2) == 0;
+                    int kept = firstNumber ? second[row] : first[row];
+                    oldNumber = firstNumber ? first[row] : second[row];
+                    int number = random.nextInt(CompiledSeries.POCKETS);
+                    if (number == kept || number == oldNumber) {
+                        continue;
+                    }
+                    setNumber(first, second, masks, row, firstNumber, number);
+                }
+                int from = other < 0 ? row : Math.min(row, other);
+                double candidate = walkerScore.score(masks, from);
+                int slot = (int) (scored++ % HISTORY);
+                if (candidate >= current || candidate >= history[slot]) {
+                    current = walkerScore.commit(masks, from);
+                    accepted++;
+                    if (current > best) {
+                        best = current;
+                        bestFirst = first.clone();
+                        bestSecond = second.clone();
+                    }
+                } else if (other >= 0) {
+                    swap(first, second, masks, row, other);
+                } else {
+                    setNumber(first, second, masks, row, firstNumber, oldNumber);
+                }
+                history[slot] = current;
+            }
+
+            List<Bet> bets = new ArrayList<>(rowCount);
+            for (int i = 0; i < rowCount; i++) {
+                bets.add(new Bet(bestFirst[i], bestSecond[i]));
+            }
+            return new Result(startBets, bets, startScore, best, scored, accepted);
+        }
+
+        private static void swap(int[] first, int[] second, long[] masks, int row, int other) {
+            int number = first[row];
+            first[row] = first[other];
+            first[other] = number;
+            number = second[row];
+            second[row] = second[other];
+            second[other] = number;
+            long mask = masks[row];
+            masks[row] = masks[other];
+            masks[other] = mask;
+        }
+
+        private static void setNumber(int[] first, int[] second, long[] masks, int row, boolean firstNumber,
+                int number) {
+            if (firstNumber) {
+                first[row] = number;
+            } else {
+                second[row] = number;
+            }
+            masks[row] = CompiledSeries.mask(new Bet(first[row], second[row]));
+        }
+    }
+
+    private static class WalkerTask extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Search search;
+        private final int fromWalker;
+        private final int toWalker;
+
+        WalkerTask(Search search, int fromWalker, int toWalker) {
+            this.search = search;
+            this.fromWalker = fromWalker;
+            this.toWalker = toWalker;
+        }
+
+        @Override
+        protected Result compute() {
+            if (toWalker - fromWalker == 1) {
+                return search.walk(fromWalker);
+            }
+            int middle = (fromWalker + toWalker) >>> 1;
+            WalkerTask left = new WalkerTask(search, fromWalker, middle);
+            WalkerTask right = new WalkerTask(search, middle, toWalker);
+            right.fork();
+            Result result = left.compute();
+            // Always merge left to right, so that a seeded search is reproducible
+            return result.merge(right.join());
+        }
+    }
+}
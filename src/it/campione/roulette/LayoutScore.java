@@ -0,0 +1,253 @@
+package it.campione.roulette;
+
+import java.util.Arrays;
+
+/**
+ * Mean gain/loss per series of a layout of row masks (bet unit 1, 35 on the
+ * table), computed incrementally for the {@link LayoutOptimizer}: the state of
+ * the game before every row of the last committed layout is kept, so a layout
+ * that differs from it only from a given row on is scored from that row, not
+ * from the first one. The exact score is the expectation on a wheel of known
+ * pocket probabilities; the sampled one is the mean on given spins, played
+ * series after series as by the {@link SpinReplay}. A score must be used by a
+ * single thread: {@link #copy} gives another one for another thread.
+ *
+ * @author D. Campione
+ *
+ */
+public abstract class LayoutScore {
+
+    protected final int retryCount;
+    protected final int rowCount;
+
+    protected LayoutScore(int retryCount, int rowCount) {
+        if (retryCount < 0) {
+            throw new IllegalArgumentException("Negative simulation parameter");
+        }
+        if (rowCount <= 0) {
+            throw new IllegalArgumentException("The series has no rows");
+        }
+        this.retryCount = retryCount;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Returns the exact score of layouts of the given rows on a fair wheel.
+     * It depends only on how many numbers lose on every row and on which rows
+     * are ignored, not on the numbers themselves.
+     */
+    public static LayoutScore exact(int retryCount, int rowCount) {
+        double[] probabilities = new double[CompiledSeries.POCKETS];
+        Arrays.fill(probabilities, 1.0 / CompiledSeries.POCKETS);
+        return exact(retryCount, rowCount, probabilities);
+    }
+
+    /**
+     * Returns the exact score on a wheel that draws every number with the
+     * given probability, e.g. from {@link #pocketProbabilities}.
+     */
+    public static LayoutScore exact(int retryCount, int rowCount, double[] pocketProbabilities) {
+        if (pocketProbabilities.length != CompiledSeries.POCKETS) {
+            throw new IllegalArgumentException("The wheel has " + CompiledSeries.POCKETS + " pockets");
+        }
+        return new Exact(retryCount, rowCount, pocketProbabilities.clone());
+    }
+
+    /**
+     * Returns the score sampled on the given spins, rowCount per series; a last
+     * incomplete series is not played. It keeps two ints per series and row.
+     */
+    public static LayoutScore sampled(int retryCount, int rowCount, int[] spins) {
+        if (spins.length < rowCount) {
+            throw new IllegalArgumentException("Fewer spins than the rows of a series");
+        }
+        for (int spin : spins) {
+            if (spin < 0 || spin >= CompiledSeries.POCKETS) {
+                throw new IllegalArgumentException("Not a number of the wheel: " + spin);
+            }
+        }
+        return new Sampled(retryCount, rowCount, spins);
+    }
+
+    /**
+     * Estimates the probability of every number from recorded spins, adding
+     * one imaginary draw of every number so that none is taken as impossible.
+     */
+    public static double[] pocketProbabilities(int[] spins) {
+        long[] counts = new long[CompiledSeries.POCKETS];
+        for (int spin : spins) {
+            counts[spin]++;
+        }
+        double[] probabilities = new double[CompiledSeries.POCKETS];
+        for (int n = 0; n < probabilities.length; n++) {
+            probabilities[n] = (counts[n] + 1.0) / (spins.length + CompiledSeries.POCKETS);
+        }
+        return probabilities;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * Returns a score with the same settings and no committed layout.
+     */
+    public abstract LayoutScore copy();
+
+    /**
+     * Scores the layout from the first row and commits it.
+     */
+    public double reset(long[] masks) {
+        checkLayout(masks, 0);
+        return evaluate(masks, 0, true);
+    }
+
+    /**
+     * Scores a layout that has the rows before {@code from} of the last
+     * committed one, without committing it.
+     */
+    public double score(long[] masks, int from) {
+        checkLayout(masks, from);
+        return evaluate(masks, from, false);
+    }
+
+    /**
+     * Commits a layout that has the rows before {@code from} of the last
+     * committed one, and returns its score.
+     */
+    public double commit(long[] masks, int from) {
+        checkLayout(masks, from);
+        return evaluate(masks, from, true);
+    }
+
+    private void checkLayout(long[] masks, int from) {
+        if (masks.length != rowCount) {
+            throw new IllegalArgumentException("Layout of " + masks.length + " rows, expected " + rowCount);
+        }
+        if (from < 0 || from > rowCount) {
+            throw new IllegalArgumentException("No row " + from);
+        }
+    }
+
+    protected abstract double evaluate(long[] masks, int from, boolean commit);
+
+    /**
+     * Exact expectation: the gain of a row is 1 - 36 p, p being the
+     * probability of its losing numbers, weighted by the probability that
+     * the game is still on; the state before a row is the distribution of the
+     * losses so far and the expected gain of the rows before it.
+     */
+    private static class Exact extends LayoutScore {
+
+        private final double[] pocketProbabilities;
+        /** Probability of every number of losses before row r, at r * (retryCount + 1). */
+        private final double[] lossDistributions;
+        private final double[] gains;
+        private final double[] distribution;
+
+        Exact(int retryCount, int rowCount, double[] pocketProbabilities) {
+            super(retryCount, rowCount);
+            this.pocketProbabilities = pocketProbabilities;
+            this.lossDistributions = new double[(rowCount + 1) * (retryCount + 1)];
+            this.gains = new double[rowCount + 1];
+            this.distribution = new double[retryCount + 1];
+            lossDistributions[0] = 1;
+        }
+
+        @Override
+        public LayoutScore copy() {
+            return new Exact(retryCount, rowCount, pocketProbabilities);
+        }
+
+        @Override
+        protected double evaluate(long[] masks, int from, boolean commit) {
+            int states = retryCount + 1;
+            System.arraycopy(lossDistributions, from * states, distribution, 0, states);
+            double gain = gains[from];
+            for (int i = from; i < rowCount; i++) {
+                long mask = masks[i];
+                if (mask >= 0) {
+                    double lossProbability = 0;
+                    for (long numbers = mask; numbers != 0; numbers &= numbers - 1) {
+                        lossProbability += pocketProbabilities[Long.numberOfTrailingZeros(numbers)];
+                    }
+                    double playing = 0;
+                    // Walk backwards, so that every probability moves by one loss only
+                    for (int losses = retryCount; losses >= 0; losses--) {
+                        double probability = distribution[losses];
+                        playing += probability;
+                        distribution[losses] = probability * (1 - lossProbability);
+                        if (losses < retryCount) {
+                            distribution[losses + 1] += probability * lossProbability;
+                        }
+                    }
+                    gain += playing * (1 - (SimulationEngine.COVERED_NUMBERS + 1) * lossProbability);
+                }
+                if (commit) {
+                    System.arraycopy(distribution, 0, lossDistributions, (i + 1) * states, states);
+                    gains[i + 1] = gain;
+                }
+            }
+            return gain;
+        }
+    }
+
+    /**
+     * Mean on given spins: the state before a row is, for every series, its
+     * losses and its gain/loss so far, kept row after row.
+     */
+    private static class Sampled extends LayoutScore {
+
+        private final int[] spins;
+        private final int seriesCount;
+        /** Losses of series s before row r, at r * seriesCount + s. */
+        private final int[] losses;
+        /** Gain/loss of series s before row r, at r * seriesCount + s. */
+        private final int[] profits;
+
+        Sampled(int retryCount, int rowCount, int[] spins) {
+            super(retryCount, rowCount);
+            this.spins = spins;
+            this.seriesCount = spins.length / rowCount;
+            this.losses = new int[Math.multiplyExact(rowCount + 1, seriesCount)];
+            this.profits = new int[losses.length];
+        }
+
+        @Override
+        public LayoutScore copy() {
+            return new Sampled(retryCount, rowCount, spins);
+        }
+
+        @Override
+        protected double evaluate(long[] masks, int from, boolean commit) {
+            long total = 0;
+            for (int s = 0; s < seriesCount; s++) {
+                int seriesLosses = losses[from * seriesCount + s];
+                int profit = profits[from * seriesCount + s];
+                for (int i = from, spin = s * rowCount + from; i < rowCount; i++, spin++) {
+                    long mask = masks[i];
+                    if (mask >= 0 && seriesLosses <= retryCount) {
+                        if ((mask >>> spins[spin] & 1L) == 0) {
+                            profit++;
+                        } else {
+                            profit -= SimulationEngine.COVERED_NUMBERS;
+                            seriesLosses++;
+                        }
+                    } else if (!commit && seriesLosses > retryCount) {
+                        break; // Over: the later rows change nothing
+                    }
+                    if (commit) {
+                        losses[(i + 1) * seriesCount + s] = seriesLosses;
+                        profits[(i + 1) * seriesCount + s] = profit;
+                    }
+                }
+                total += profit;
+            }
+            return (double) total / seriesCount;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+
+/**
+ * {@link SpinSource} over a memory-mapped {@link SpinLog}: the spins are
+ * copied straight from the mapping, so no read-ahead is needed.
+ *
+ * @author D. Campione
+ *
+ */
+final class LogSpinSource implements SpinSource {
+
+    private final SpinLog log;
+    private long position;
+
+    LogSpinSource(SpinLog log) {
+        this.log = log;
+    }
+
+    @Override
+    public int read(int[] out, int from, int to) {
+        int count = log.read(position, out, from, to);
+        if (count > 0) {
+            position += count;
+        }
+        return count;
+    }
+
+    @Override
+    public long remaining() {
+        return log.size() - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+}
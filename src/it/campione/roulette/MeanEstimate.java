@@ -0,0 +1,194 @@
+package it.campione.roulette;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Estimate of the mean of a quantity from independent samples, with its
+ * confidence interval, both plain and corrected with a control variate: a
+ * second quantity sampled together with the first whose mean is known
+ * exactly. The samples of the control are given already centered on their
+ * known mean, so the corrected estimate is the plain mean minus beta times
+ * the mean of the control, with beta fitted by least squares on the samples.
+ * The moments are updated online and can be merged, so an estimate can be
+ * filled by several workers in constant memory.
+ *
+ * @author D. Campione
+ *
+ */
+public class MeanEstimate {
+
+    /** Quantile of the normal distribution of the 95% confidence intervals. */
+    public static final double Z_95 = 1.959963984540054;
+
+    /** Coefficients of the rational approximation of {@link #inverseNormal}. */
+    private static final double[] A = { -3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+            1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00 };
+    private static final double[] B = { -5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+            6.680131188771972e+01, -1.328068155288572e+01 };
+    private static final double[] C = { -7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+            -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00 };
+    private static final double[] D = { 7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+            3.754408661907416e+00 };
+
+    private long count;
+    private double mean;
+    private double controlMean;
+    private double m2;
+    private double controlM2;
+    private double comoment;
+
+    /**
+     * Adds a sample.
+     *
+     * @param value   the sampled quantity
+     * @param control the control variate of the same sample, minus its known
+     *                mean
+     */
+    public void add(double value, double control) {
+        count++;
+        double delta = value - mean;
+        double controlDelta = control - controlMean;
+        mean += delta / count;
+        controlMean += controlDelta / count;
+        m2 += delta * (value - mean);
+        controlM2 += controlDelta * (control - controlMean);
+        comoment += delta * (control - controlMean);
+    }
+
+    /**
+     * Adds the samples of another estimate.
+     */
+    public void merge(MeanEstimate other) {
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        double controlDelta = other.controlMean - controlMean;
+        double weight = (double) count * other.count / total;
+        m2 += other.m2 + delta * delta * weight;
+        controlM2 += other.controlM2 + controlDelta * controlDelta * weight;
+        comoment += other.comoment + delta * controlDelta * weight;
+        mean += delta * other.count / total;
+        controlMean += controlDelta * other.count / total;
+        count = total;
+    }
+
+    /**
+     * Writes the moments, for a {@link Checkpoint}.
+     */
+    void writeState(DataOutput out) throws IOException {
+        out.writeLong(count);
+        out.writeDouble(mean);
+        out.writeDouble(controlMean);
+        out.writeDouble(m2);
+        out.writeDouble(controlM2);
+        out.writeDouble(comoment);
+    }
+
+    /**
+     * Replaces the moments with the ones written by {@link #writeState}.
+     */
+    void readState(DataInput in) throws IOException {
+        count = in.readLong();
+        mean = in.readDouble();
+        controlMean = in.readDouble();
+        m2 = in.readDouble();
+        controlM2 = in.readDouble();
+        comoment = in.readDouble();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the standard error of the plain mean (0 below two samples).
+     */
+    public double getStandardError() {
+        return count > 1 ? Math.sqrt(m2 / (count - 1) / count) : 0;
+    }
+
+    /**
+     * Returns the half-width of the 95% confidence interval of the plain mean.
+     */
+    public double getHalfWidth() {
+        return Z_95 * getStandardError();
+    }
+
+    /**
+     * Returns the half-width of the confidence interval of the plain mean at
+     * the given level, e.g. 0.99.
+     */
+    public double getHalfWidth(double confidence) {
+        return zScore(confidence) * getStandardError();
+    }
+
+    /**
+     * Returns the coefficient of the control, 0 when the control never
+     * varied.
+     */
+    public double getBeta() {
+        return controlM2 > 0 ? comoment / controlM2 : 0;
+    }
+
+    public double getControlledMean() {
+        return mean - getBeta() * controlMean;
+    }
+
+    /**
+     * Returns the standard error of the mean corrected with the control, from
+     * the residual variance of the samples around the fitted line.
+     */
+    public double getControlledStandardError() {
+        if (count < 3) {
+            return getStandardError();
+        }
+        double residual = controlM2 > 0 ? m2 - comoment * comoment / controlM2 : m2;
+        return Math.sqrt(Math.max(residual, 0) / (count - 2) / count);
+    }
+
+    public double getControlledHalfWidth() {
+        return Z_95 * getControlledStandardError();
+    }
+
+    public double getControlledHalfWidth(double confidence) {
+        return zScore(confidence) * getControlledStandardError();
+    }
+
+    /**
+     * Returns the quantile of the normal distribution that leaves the given
+     * two-sided confidence in the middle, e.g. 1.96 for 0.95.
+     */
+    public static double zScore(double confidence) {
+        if (!(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException("The confidence must be between 0 and 1: " + confidence);
+        }
+        return inverseNormal(0.5 + confidence / 2);
+    }
+
+    /**
+     * Inverse of the standard normal distribution function, by Acklam's
+     * rational approximation (relative error below 1.2e-9).
+     */
+    private static double inverseNormal(double p) {
+        if (p < 0.02425) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((C[0] * q + C[1]) * q + C[2]) * q + C[3]) * q + C[4]) * q + C[5])
+                    / ((((D[0] * q + D[1]) * q + D[2]) * q + D[3]) * q + 1);
+        }
+        if (p > 1 - 0.02425) {
+            return -inverseNormal(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((A[0] * r + A[1]) * r + A[2]) * r + A[3]) * r + A[4]) * r + A[5]) * q
+                / (((((B[0] * r + B[1]) * r + B[2]) * r + B[3]) * r + B[4]) * r + 1);
+    }
+}
@@ -0,0 +1,483 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * "Massive simulation" mode of the extraction: the series are split in chunks
+ * that are played on a fork-join pool, every chunk with its own random source
+ * ({@link RandomAlgorithm#SPLITTABLE} by default), and only the aggregated
+ * {@link SeriesStatistics} are kept. The seed of a chunk depends only on the run seed and on the chunk
+ * index, so a seeded run gives the same statistics with any number of threads.
+ * When the Vector API is available, the series are evaluated many at a time
+ * by a vectorized {@link SeriesBatchEvaluator}, with the same outcomes. A
+ * {@link VarianceReduction} technique can draw the numbers of the series in
+ * groups, for tighter confidence intervals with the same series, and
+ * {@link #runUntilPrecision} plays batches of chunks until the mean gain/loss
+ * is known to the requested precision.
+ *
+ * @author D. Campione
+ *
+ */
+public class ParallelSimulationEngine implements AutoCloseable {
+
+    /** Number of series played by a single fork-join leaf task. */
+    static final int CHUNK_SIZE = 1 << 14;
+
+    /**
+     * Drawn numbers evaluated at a time by a vectorized
+     * {@link SeriesBatchEvaluator}: few enough to stay in the cache between
+     * the draw and the evaluation.
+     */
+    static final int EVALUATOR_SPINS = 1 << 13;
+
+    /** Fewest chunks of a batch of {@link #runUntilPrecision}. */
+    static final int MIN_BATCH_CHUNKS = 8;
+
+    private final ForkJoinPool pool;
+    private final boolean ownPool;
+    private RandomAlgorithm randomAlgorithm = RandomAlgorithm.SPLITTABLE;
+    private VarianceReduction varianceReduction = VarianceReduction.NONE;
+
+    public ParallelSimulationEngine() {
+        this(ForkJoinPool.commonPool(), false);
+    }
+
+    public ParallelSimulationEngine(int parallelism) {
+        this(new ForkJoinPool(parallelism), true);
+    }
+
+    public ParallelSimulationEngine(ForkJoinPool pool) {
+        this(pool, false);
+    }
+
+    private ParallelSimulationEngine(ForkJoinPool pool, boolean ownPool) {
+        this.pool = pool;
+        this.ownPool = ownPool;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    ForkJoinPool getPool() {
+        return pool;
+    }
+
+    public RandomAlgorithm getRandomAlgorithm() {
+        return randomAlgorithm;
+    }
+
+    public void setRandomAlgorithm(RandomAlgorithm randomAlgorithm) {
+        this.randomAlgorithm = randomAlgorithm;
+    }
+
+    public VarianceReduction getVarianceReduction() {
+        return varianceReduction;
+    }
+
+    public void setVarianceReduction(VarianceReduction varianceReduction) {
+        this.varianceReduction = varianceReduction;
+    }
+
+    public SeriesStatistics run(List<Bet> bets, int retryCount, long seriesCount, int betUnit) {
+        return run(bets, retryCount, seriesCount, betUnit, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Plays the series in parallel.
+     *
+     * @param bets        the rows of excluded couples ("ignora" rows included)
+     * @param retryCount  how many losses are retried before the game stops
+     * @param seriesCount how many times the whole series is played
+     * @param betUnit     the amount bet on every covered number
+     * @param seed        the seed of the run
+     * @return the statistics of all the played series
+     */
+    public SeriesStatistics run(List<Bet> bets, int retryCount, long seriesCount, int betUnit, long seed) {
+        return run(new SimulationParameters(bets, retryCount, seriesCount, betUnit, 0, seed));
+    }
+
+    /**
+     * Plays the series in parallel, reporting the progress to the monitor after
+     * every chunk.
+     *
+     * @throws CancellationException if the monitor cancels the run
+     */
+    public SeriesStatistics run(List<Bet> bets, int retryCount, long seriesCount, int betUnit, long seed,
+            SimulationMonitor monitor) {
+        return run(new SimulationParameters(bets, retryCount, seriesCount, betUnit, 0, seed), monitor);
+    }
+
+    public SeriesStatistics run(SimulationParameters parameters) {
+        return run(parameters, SimulationMonitor.NONE);
+    }
+
+    /**
+     * Plays the series in parallel, reporting the progress to the monitor after
+     * every chunk. With a {@link VarianceReduction}, the series count is
+     * rounded up to whole groups, and the statistics give the series played.
+     *
+     * @throws CancellationException if the monitor cancels the run
+     */
+    public SeriesStatistics run(SimulationParameters parameters, SimulationMonitor monitor) {
+        parameters = wholeGroups(parameters, true);
+        SimulationMetrics metrics = SimulationMetrics.getDefault();
+        long start = metrics.getSimulationTimer().start();
+        Job job = new Job(parameters, randomAlgorithm, varianceReduction, monitor, parameters.getSeriesCount());
+        int chunkSize = chunkSize(varianceReduction);
+        long chunkCount = (parameters.getSeriesCount() + chunkSize - 1) / chunkSize;
+        SeriesStatistics statistics = job.newStatistics();
+        for (long fromChunk = 0; fromChunk < chunkCount; fromChunk += Checkpoint.BATCH_CHUNKS) {
+            // Merge the batches in order, as a checkpointed run does, so that both give the same statistics
+            statistics.merge(pool.invoke(
+                    new ChunkTask(job, fromChunk, Math.min(fromChunk + Checkpoint.BATCH_CHUNKS, chunkCount))));
+        }
+        metrics.getSimulationTimer().stop(start);
+        metrics.seriesPlayed(statistics.getSeriesCount(), statistics.getSeriesCount() * job.series.getRowCount());
+        return statistics;
+    }
+
+    /**
+     * Plays the series in parallel as
+     * {@link #run(SimulationParameters, SimulationMonitor)}, saving the progress
+     * in the checkpoint and resuming it from there if its file exists. The
+     * statistics do not depend on the number of threads nor on the stops and
+     * resumes, and are exactly the ones of a run without checkpoint, which
+     * merges its chunks in the same batches. The monitor is also told the
+     * series resumed.
+     *
+     * @throws IllegalArgumentException if the checkpoint is of another run
+     * @throws CancellationException    if the monitor cancels the run, after
+     *                                  the last batch is saved
+     */
+    public SeriesStatistics run(SimulationParameters parameters, Checkpoint checkpoint, SimulationMonitor monitor)
+            throws IOException {
+        parameters = wholeGroups(parameters, true);
+        SimulationMetrics metrics = SimulationMetrics.getDefault();
+        long start = metrics.getSimulationTimer().start();
+        Job job = new Job(parameters, randomAlgorithm, varianceReduction, monitor, parameters.getSeriesCount());
+        int chunkSize = chunkSize(varianceReduction);
+        long chunkCount = (parameters.getSeriesCount() + chunkSize - 1) / chunkSize;
+        StringBuilder run = new StringBuilder();
+        run.append("run seed=").append(parameters.getSeed()).append(" series=").append(parameters.getSeriesCount())
+                .append(" retry=").append(parameters.getRetryCount()).append(" bet-unit=")
+                .append(parameters.getBetUnit()).append(" attempt-limit=").append(parameters.getAttemptLimit())
+                .append(" rng=").append(randomAlgorithm).append(" variance-reduction=").append(varianceReduction)
+                .append(" chunk=").append(chunkSize).append(" batch=").append(Checkpoint.BATCH_CHUNKS);
+        Checkpoint.appendLayout(run, job.series);
+        SeriesStatistics[] statistics = { job.newStatistics() };
+        long resumedChunks = checkpoint.resume(run.toString(), statistics);
+        if (resumedChunks > 0) {
+            job.chunkCompleted(statistics[0]);
+        }
+        checkpoint.play(run.toString(), statistics, resumedChunks, chunkCount,
+                (fromChunk, toChunk) -> new SeriesStatistics[] { pool.invoke(new ChunkTask(job, fromChunk, toChunk)) });
+        metrics.getSimulationTimer().stop(start);
+        long played = statistics[0].getSeriesCount() - checkpoint.getResumedSeries();
+        metrics.seriesPlayed(played, played * job.series.getRowCount());
+        return statistics[0];
+    }
+
+    /**
+     * Plays batches of series in parallel until the confidence interval of the
+     * mean gain/loss per series, corrected with the control variate, is no
+     * wider than the given half-width, or the series count of the parameters
+     * is reached. The first batch is {@link #MIN_BATCH_CHUNKS} chunks; the
+     * next ones are sized from the variance seen so far, at most four times
+     * the series already played. The batches do not depend on the number of
+     * threads, so neither does the result of a seeded run. The series are played in chunks as by
+     * {@link #run(SimulationParameters, SimulationMonitor)}, so they are the
+     * same series as the ones of a run of the same seed and series count. The
+     * monitor is told -1 as the total of series.
+     *
+     * @param parameters the parameters; the series count is the most series to
+     *                   play, rounded down to whole groups of the
+     *                   {@link VarianceReduction}, the attempt limit must be 0
+     *                   as it depends on the final series count
+     * @param halfWidth  the half-width of the interval to reach
+     * @param confidence the confidence level of the interval, e.g. 0.99
+     * @return the statistics of the played series
+     * @throws CancellationException if the monitor cancels the run
+     */
+    public SeriesStatistics runUntilPrecision(SimulationParameters parameters, double halfWidth, double confidence,
+            SimulationMonitor monitor) {
+        if (!(halfWidth > 0)) {
+            throw new IllegalArgumentException("The precision must be positive: " + halfWidth);
+        }
+        if (parameters.getAttemptLimit() != 0) {
+            throw new IllegalArgumentException("The attempt limit needs a fixed number of series");
+        }
+        parameters = wholeGroups(parameters, false);
+        double z = MeanEstimate.zScore(confidence);
+        SimulationMetrics metrics = SimulationMetrics.getDefault();
+        long start = metrics.getSimulationTimer().start();
+        Job job = new Job(parameters, randomAlgorithm, varianceReduction, monitor, -1);
+        int chunkSize = chunkSize(varianceReduction);
+        long maxSeries = parameters.getSeriesCount();
+        long chunkCount = maxSeries / chunkSize + (maxSeries % chunkSize != 0 ? 1 : 0);
+        SeriesStatistics statistics = job.newStatistics();
+        long played = 0;
+        long batch = Math.min(MIN_BATCH_CHUNKS, chunkCount);
+        while (batch > 0) {
+            // Always merge in chunk order, so that a seeded run is reproducible
+            statistics.merge(pool.invoke(new ChunkTask(job, played, played + batch)));
+            played += batch;
+            double reached = z * statistics.getProfitEstimate().getControlledStandardError();
+            if (statistics.getProfitEstimate().getCount() > 2 && reached <= halfWidth) {
+                break;
+            }
+            // The half-width shrinks as the square root of the samples
+            double needed = played * (reached / halfWidth) * (reached / halfWidth) - played;
+            batch = Math.min(Math.min((long) Math.ceil(needed), 4 * played), chunkCount - played);
+            batch = Math.max(batch, Math.min(MIN_BATCH_CHUNKS, chunkCount - played));
+        }
+        metrics.getSimulationTimer().stop(start);
+        metrics.seriesPlayed(statistics.getSeriesCount(), statistics.getSeriesCount() * job.series.getRowCount());
+        return statistics;
+    }
+
+    /**
+     * Returns the parameters with the series count rounded to whole groups of
+     * the technique: a group is a single sample of the estimates, and an
+     * incomplete one would weigh as much as a whole one without drawing every
+     * number equally often.
+     */
+    private SimulationParameters wholeGroups(SimulationParameters parameters, boolean roundUp) {
+        int groupSize = varianceReduction.getGroupSize();
+        long seriesCount = parameters.getSeriesCount();
+        long rest = seriesCount % groupSize;
+        if (rest == 0) {
+            return parameters;
+        }
+        long wholeCount = seriesCount - rest;
+        if (roundUp && wholeCount <= Long.MAX_VALUE - groupSize) {
+            wholeCount += groupSize;
+        }
+        return new SimulationParameters(parameters.getBets(), parameters.getRetryCount(), wholeCount,
+                parameters.getBetUnit(), parameters.getAttemptLimit(), parameters.getSeed());
+    }
+
+    @Override
+    public void close() {
+        if (ownPool) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Derives the seed of a chunk from the seed of the run (SplitMix64
+     * finalizer), so that neighbouring chunks get unrelated streams.
+     */
+    static long chunkSeed(long seed, long chunk) {
+        long z = seed + (chunk + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the series of a chunk: a whole number of groups of the
+     * technique, so that no group spans two chunks.
+     */
+    static int chunkSize(VarianceReduction varianceReduction) {
+        return CHUNK_SIZE - CHUNK_SIZE % varianceReduction.getGroupSize();
+    }
+
+    /**
+     * Plays the series of a chunk and returns their statistics.
+     */
+    static SeriesStatistics playChunk(CompiledSeries series, SimulationParameters parameters,
+            RandomAlgorithm randomAlgorithm, VarianceReduction varianceReduction, long chunk) {
+        if (varianceReduction != VarianceReduction.NONE) {
+            return playGroupedChunk(series, parameters, randomAlgorithm, varianceReduction, chunk);
+        }
+        SeriesStatistics statistics = new SeriesStatistics(series.getRowCount(), parameters.getRetryCount());
+        Roulette roulette = new Roulette(randomAlgorithm.create(chunkSeed(parameters.getSeed(), chunk)));
+        double expectedHits = series.getExpectedHits();
+        long seriesCount = parameters.getSeriesCount();
+        int attemptLimit = parameters.getAttemptLimit();
+        long from = chunk * CHUNK_SIZE;
+        long to = Math.min(from + CHUNK_SIZE, seriesCount);
+        // The gain/loss up to the attempt limit needs the outcome of every row
+        if (attemptLimit <= from) {
+            SeriesBatchEvaluator evaluator = SeriesBatchEvaluator.create(series, parameters.getRetryCount(),
+                    Math.max(EVALUATOR_SPINS / Math.max(series.getRowCount(), 1), 1));
+            if (evaluator.isVectorized()) {
+                playBatches(evaluator, roulette, parameters.getBetUnit(), from, to, statistics);
+                return statistics;
+            }
+        }
+        SeriesPlayer player = new SeriesPlayer(series, parameters.getRetryCount(), parameters.getBetUnit());
+        for (long index = from; index < to; index++) {
+            player.play(roulette);
+            int limitedProfit = index < attemptLimit ? player.getLimitedProfit(index, seriesCount, attemptLimit) : 0;
+            statistics.addSeries(index, player.getProfit(), player.getDots(), player.getLosses(),
+                    player.getFirstFailureRow(), limitedProfit);
+            statistics.addSample(player.getProfit(), player.getDots(), player.getHits() - expectedHits);
+        }
+        return statistics;
+    }
+
+    /**
+     * Plays the series [from, to) a batch at a time on the evaluator.
+     */
+    private static void playBatches(SeriesBatchEvaluator evaluator, Roulette roulette, int betUnit, long from,
+            long to, SeriesStatistics statistics) {
+        double expectedHits = evaluator.series.getExpectedHits();
+        int batch = evaluator.getCapacity();
+        for (long index = from; index < to; index += batch) {
+            int count = (int) Math.min(batch, to - index);
+            evaluator.draw(roulette, count);
+            evaluator.evaluate(count);
+            for (int s = 0; s < count; s++) {
+                int profit = evaluator.getProfit(s, betUnit);
+                statistics.addSeries(index + s, profit, evaluator.getDots(s), evaluator.getLosses(s),
+                        evaluator.getFirstFailureRow(s));
+                statistics.addSample(profit, evaluator.getDots(s), evaluator.getHits(s) - expectedHits);
+            }
+        }
+    }
+
+    /**
+     * Plays the series of a chunk in groups drawn together, one sample per
+     * group; the run has whole groups only.
+     */
+    private static SeriesStatistics playGroupedChunk(CompiledSeries series, SimulationParameters parameters,
+            RandomAlgorithm randomAlgorithm, VarianceReduction varianceReduction, long chunk) {
+        int rowCount = series.getRowCount();
+        SeriesStatistics statistics = new SeriesStatistics(rowCount, parameters.getRetryCount());
+        SeriesPlayer player = new SeriesPlayer(series, parameters.getRetryCount(), parameters.getBetUnit());
+        RandomSource random = randomAlgorithm.create(chunkSeed(parameters.getSeed(), chunk));
+        Roulette roulette = new Roulette(random);
+        int groupSize = varianceReduction.getGroupSize();
+        int[] spins = new int[rowCount];
+        int[][] strata = varianceReduction == VarianceReduction.STRATIFIED ? new int[rowCount][groupSize] : null;
+        double expectedHits = series.getExpectedHits();
+        long seriesCount = parameters.getSeriesCount();
+        int attemptLimit = parameters.getAttemptLimit();
+        int chunkSize = chunkSize(varianceReduction);
+        long from = chunk * chunkSize;
+        long to = Math.min(from + chunkSize, seriesCount);
+        for (long group = from; group < to; group += groupSize) {
+            int size = (int) Math.min(groupSize, to - group);
+            if (strata != null) {
+                for (int i = 0; i < rowCount; i++) {
+                    shuffleNumbers(random, strata[i]);
+                }
+            } else {
+                roulette.spin(spins);
+            }
+            long profit = 0;
+            long dots = 0;
+            long hits = 0;
+            for (int k = 0; k < size; k++) {
+                for (int i = 0; i < rowCount; i++) {
+                    // The antithetic series draws the number opposite to the one of the first
+                    spins[i] = strata != null ? strata[i][k] : k == 0 ? spins[i] : 36 - spins[i];
+                }
+                player.play(spins, 0);
+                long index = group + k;
+                int limitedProfit = index < attemptLimit ? player.getLimitedProfit(index, seriesCount, attemptLimit)
+                        : 0;
+                statistics.addSeries(index, player.getProfit(), player.getDots(), player.getLosses(),
+                        player.getFirstFailureRow(), limitedProfit);
+                profit += player.getProfit();
+                dots += player.getDots();
+                hits += player.getHits();
+            }
+            statistics.addSample((double) profit / size, (double) dots / size, (double) hits / size - expectedHits);
+        }
+        return statistics;
+    }
+
+    /**
+     * Fills the array with the numbers of the wheel in random order
+     * (Fisher-Yates).
+     */
+    private static void shuffleNumbers(RandomSource random, int[] numbers) {
+        for (int i = 0; i < numbers.length; i++) {
+            int j = random.nextInt(i + 1);
+            numbers[i] = numbers[j];
+            numbers[j] = i;
+        }
+    }
+
+    private static class ChunkTask extends RecursiveTask<SeriesStatistics> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Job job;
+        private final long fromChunk;
+        private final long toChunk;
+
+        ChunkTask(Job job, long fromChunk, long toChunk) {
+            this.job = job;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected SeriesStatistics compute() {
+            if (toChunk - fromChunk == 1) {
+                if (job.monitor.isCancelled()) {
+                    throw new CancellationException("Simulation cancelled");
+                }
+                long allocated = SimulationMetrics.threadAllocatedBytes();
+                SeriesStatistics statistics = playChunk(job.series, job.parameters, job.randomAlgorithm,
+                        job.varianceReduction, fromChunk);
+                SimulationMetrics.getDefault().allocatedSince(allocated, statistics.getSeriesCount());
+                job.chunkCompleted(statistics);
+                return statistics;
+            }
+            long middle = (fromChunk + toChunk) >>> 1;
+            ChunkTask left = new ChunkTask(job, fromChunk, middle);
+            ChunkTask right = new ChunkTask(job, middle, toChunk);
+            right.fork();
+            SeriesStatistics statistics = left.compute();
+            // Always merge left to right, so that a seeded run is reproducible
+            statistics.merge(right.join());
+            return statistics;
+        }
+    }
+
+    /**
+     * State shared by all the tasks of a run.
+     */
+    private static class Job {
+
+        private final SimulationParameters parameters;
+        private final CompiledSeries series;
+        private final RandomAlgorithm randomAlgorithm;
+        private final VarianceReduction varianceReduction;
+        private final SimulationMonitor monitor;
+        private final long totalSeries;
+        private final AtomicLong completedSeries = new AtomicLong();
+        private final AtomicLong totalProfitLoss = new AtomicLong();
+
+        Job(SimulationParameters parameters, RandomAlgorithm randomAlgorithm, VarianceReduction varianceReduction,
+                SimulationMonitor monitor, long totalSeries) {
+            this.parameters = parameters;
+            this.series = CompiledSeries.compile(parameters.getBets());
+            this.randomAlgorithm = randomAlgorithm;
+            this.varianceReduction = varianceReduction;
+            this.monitor = monitor;
+            this.totalSeries = totalSeries;
+        }
+
+        SeriesStatistics newStatistics() {
+            return new SeriesStatistics(series.getRowCount(), parameters.getRetryCount());
+        }
+
+        void chunkCompleted(SeriesStatistics statistics) {
+            long profit = totalProfitLoss.addAndGet(statistics.getTotalProfitLoss());
+            long completed = completedSeries.addAndGet(statistics.getSeriesCount());
+            monitor.seriesCompleted(completed, totalSeries, profit);
+        }
+    }
+}
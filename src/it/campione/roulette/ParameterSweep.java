@@ -0,0 +1,309 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Evaluates the whole Cartesian product of series layouts, retry counts, bet
+ * amounts and attempt limits in a single run. All the configurations are
+ * played on the same drawn numbers (common random numbers): every series draws
+ * its numbers once, each layout and retry count plays them once, and the bet
+ * amounts and attempt limits only scale and cut the outcome. The whole grid
+ * therefore costs little more than one run per retry count, and the
+ * differences between the configurations are not blurred by the randomness of
+ * separate runs.
+ * <p>
+ * With a single layout, every configuration gives exactly the statistics of a
+ * {@link ParallelSimulationEngine} run with the same seed.
+ *
+ * @author D. Campione
+ *
+ */
+public class ParameterSweep {
+
+    private final ParallelSimulationEngine engine;
+
+    public ParameterSweep(ParallelSimulationEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Runs the sweep.
+     *
+     * @param layouts       the series layouts
+     * @param retryCounts   the retry counts
+     * @param betAmounts    the bet amounts on the table (35 = 1 per number)
+     * @param attemptLimits the attempt limits (0 = no limit)
+     * @param seriesCount   how many series every configuration plays
+     * @param seed          the seed of the run
+     * @return the results, layout by layout, then retry count, bet amount and
+     *         attempt limit, in the order given
+     */
+    public List<Result> run(List<List<Bet>> layouts, int[] retryCounts, int[] betAmounts, int[] attemptLimits,
+            long seriesCount, long seed) {
+        SimulationMetrics metrics = SimulationMetrics.getDefault();
+        long start = metrics.getSimulationTimer().start();
+        Grid grid = new Grid(layouts, retryCounts, betAmounts, attemptLimits, seriesCount, seed,
+                engine.getRandomAlgorithm());
+        SeriesStatistics[] statistics = grid.newStatistics();
+        long chunkCount = (seriesCount + ParallelSimulationEngine.CHUNK_SIZE - 1) / ParallelSimulationEngine.CHUNK_SIZE;
+        for (long fromChunk = 0; fromChunk < chunkCount; fromChunk += Checkpoint.BATCH_CHUNKS) {
+            // Merge the batches in order, as a checkpointed sweep does, so that both give the same statistics
+            SeriesStatistics[] batch = engine.getPool().invoke(
+                    new SweepTask(grid, fromChunk, Math.min(fromChunk + Checkpoint.BATCH_CHUNKS, chunkCount)));
+            for (int i = 0; i < statistics.length; i++) {
+                statistics[i].merge(batch[i]);
+            }
+        }
+        metrics.getSimulationTimer().stop(start);
+        // Every layout and retry count plays the series, on the spins drawn once
+        metrics.seriesPlayed(seriesCount * layouts.size() * retryCounts.length, seriesCount * grid.maxRowCount);
+        return results(layouts, retryCounts, betAmounts, attemptLimits, seriesCount, seed, grid, statistics);
+    }
+
+    /**
+     * Runs the sweep as {@link #run(List, int[], int[], int[], long, long)},
+     * saving the progress in the checkpoint and resuming it from there if its
+     * file exists (see {@link Checkpoint}).
+     *
+     * @throws IllegalArgumentException if the checkpoint is of another sweep
+     */
+    public List<Result> run(List<List<Bet>> layouts, int[] retryCounts, int[] betAmounts, int[] attemptLimits,
+            long seriesCount, long seed, Checkpoint checkpoint) throws IOException {
+        SimulationMetrics metrics = SimulationMetrics.getDefault();
+        long start = metrics.getSimulationTimer().start();
+        Grid grid = new Grid(layouts, retryCounts, betAmounts, attemptLimits, seriesCount, seed,
+                engine.getRandomAlgorithm());
+        long chunkCount = (seriesCount + ParallelSimulationEngine.CHUNK_SIZE - 1) / ParallelSimulationEngine.CHUNK_SIZE;
+        StringBuilder run = new StringBuilder();
+        run.append("sweep seed=").append(seed).append(" series=").append(seriesCount).append(" retry=")
+                .append(Arrays.toString(retryCounts)).append(" bet-unit=").append(Arrays.toString(grid.betUnits))
+                .append(" attempt-limit=").append(Arrays.toString(attemptLimits)).append(" rng=")
+                .append(engine.getRandomAlgorithm()).append(" chunk=").append(ParallelSimulationEngine.CHUNK_SIZE)
+                .append(" batch=").append(Checkpoint.BATCH_CHUNKS);
+        for (CompiledSeries layout : grid.layouts) {
+            Checkpoint.appendLayout(run, layout);
+        }
+        SeriesStatistics[] statistics = grid.newStatistics();
+        long resumedChunks = checkpoint.resume(run.toString(), statistics);
+        checkpoint.play(run.toString(), statistics, resumedChunks, chunkCount,
+                (fromChunk, toChunk) -> engine.getPool().invoke(new SweepTask(grid, fromChunk, toChunk)));
+        metrics.getSimulationTimer().stop(start);
+        long played = seriesCount - checkpoint.getResumedSeries();
+        metrics.seriesPlayed(played * layouts.size() * retryCounts.length, played * grid.maxRowCount);
+        return results(layouts, retryCounts, betAmounts, attemptLimits, seriesCount, seed, grid, statistics);
+    }
+
+    private static List<Result> results(List<List<Bet>> layouts, int[] retryCounts, int[] betAmounts,
+            int[] attemptLimits, long seriesCount, long seed, Grid grid, SeriesStatistics[] statistics) {
+        List<Result> results = new ArrayList<>(statistics.length);
+        for (int l = 0; l < layouts.size(); l++) {
+            for (int r = 0; r < retryCounts.length; r++) {
+                for (int b = 0; b < betAmounts.length; b++) {
+                    for (int a = 0; a < attemptLimits.length; a++) {
+                        SimulationParameters parameters = new SimulationParameters(layouts.get(l), retryCounts[r],
+                                seriesCount, betAmounts[b] / SimulationEngine.COVERED_NUMBERS, attemptLimits[a], seed);
+                        results.add(new Result(l, parameters, statistics[grid.index(l, r, b, a)]));
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Writes the results as a text table, one configuration per line.
+     */
+    public static String formatTable(List<Result> results) {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%6s %5s %6s %5s %12s %10s %12s %8s %10s %12s%n", "layout", "retry", "bet", "limit",
+                "mean", "std.dev", "total", "stopped", "drawdown", "limited"));
+        for (Result result : results) {
+            SimulationParameters parameters = result.getParameters();
+            SeriesStatistics statistics = result.getStatistics();
+            double stopped = statistics.getSeriesCount() > 0
+                    ? 100.0 * statistics.getStoppedSeries() / statistics.getSeriesCount()
+                    : 0;
+            table.append(String.format("%6d %5d %6d %5d %12.4f %10.4f %12d %7.2f%% %10d %12s%n",
+                    result.getLayoutIndex() + 1, parameters.getRetryCount(), parameters.getBetAmount(),
+                    parameters.getAttemptLimit(), statistics.getMeanProfit(), statistics.getProfitStandardDeviation(),
+                    statistics.getTotalProfitLoss(), stopped, statistics.getMaxDrawdown(),
+                    parameters.getAttemptLimit() != 0 ? String.valueOf(statistics.getLimitedProfitLoss()) : "-"));
+        }
+        return table.toString();
+    }
+
+    /**
+     * Outcome of one configuration of the sweep.
+     */
+    public static class Result {
+
+        private final int layoutIndex;
+        private final SimulationParameters parameters;
+        private final SeriesStatistics statistics;
+
+        Result(int layoutIndex, SimulationParameters parameters, SeriesStatistics statistics) {
+            this.layoutIndex = layoutIndex;
+            this.parameters = parameters;
+            this.statistics = statistics;
+        }
+
+        public int getLayoutIndex() {
+            return layoutIndex;
+        }
+
+        public SimulationParameters getParameters() {
+            return parameters;
+        }
+
+        public SeriesStatistics getStatistics() {
+            return statistics;
+        }
+    }
+
+    /**
+     * The configurations of a sweep, shared by all its tasks.
+     */
+    private static class Grid {
+
+        private final CompiledSeries[] layouts;
+        private final int[] retryCounts;
+        private final int[] betUnits;
+        private final int[] attemptLimits;
+        private final long seriesCount;
+        private final long seed;
+        private final RandomAlgorithm randomAlgorithm;
+        private final int maxRowCount;
+
+        Grid(List<List<Bet>> layouts, int[] retryCounts, int[] betAmounts, int[] attemptLimits, long seriesCount,
+                long seed, RandomAlgorithm randomAlgorithm) {
+            this.layouts = new CompiledSeries[layouts.size()];
+            int rows = 0;
+            for (int l = 0; l < this.layouts.length; l++) {
+                this.layouts[l] = CompiledSeries.compile(layouts.get(l));
+                rows = Math.max(rows, this.layouts[l].getRowCount());
+            }
+            this.maxRowCount = rows;
+            this.retryCounts = retryCounts.clone();
+            this.betUnits = new int[betAmounts.length];
+            for (int b = 0; b < betAmounts.length; b++) {
+                this.betUnits[b] = betAmounts[b] / SimulationEngine.COVERED_NUMBERS;
+            }
+            this.attemptLimits = attemptLimits.clone();
+            this.seriesCount = seriesCount;
+            this.seed = seed;
+            this.randomAlgorithm = randomAlgorithm;
+            for (int retryCount : retryCounts) {
+                if (retryCount < 0) {
+                    throw new IllegalArgumentException("Negative simulation parameter");
+                }
+            }
+        }
+
+        int index(int layout, int retry, int bet, int attemptLimit) {
+            return ((layout * retryCounts.length + retry) * betUnits.length + bet) * attemptLimits.length
+                    + attemptLimit;
+        }
+
+        SeriesStatistics[] newStatistics() {
+            SeriesStatistics[] statistics = new SeriesStatistics[layouts.length * retryCounts.length
+                    * betUnits.length * attemptLimits.length];
+            for (int l = 0; l < layouts.length; l++) {
+                for (int r = 0; r < retryCounts.length; r++) {
+                    for (int b = 0; b < betUnits.length; b++) {
+                        for (int a = 0; a < attemptLimits.length; a++) {
+                            statistics[index(l, r, b, a)] = new SeriesStatistics(layouts[l].getRowCount(),
+                                    retryCounts[r]);
+                        }
+                    }
+                }
+            }
+            return statistics;
+        }
+
+        SeriesStatistics[] playChunk(long chunk) {
+            SeriesStatistics[] statistics = newStatistics();
+            SeriesPlayer[][] players = new SeriesPlayer[layouts.length][retryCounts.length];
+            for (int l = 0; l < layouts.length; l++) {
+                for (int r = 0; r < retryCounts.length; r++) {
+                    players[l][r] = new SeriesPlayer(layouts[l], retryCounts[r], 1);
+                }
+            }
+            double[] expectedHits = new double[layouts.length];
+            for (int l = 0; l < layouts.length; l++) {
+                expectedHits[l] = layouts[l].getExpectedHits();
+            }
+            int[] spins = new int[maxRowCount];
+            Roulette roulette = new Roulette(
+                    randomAlgorithm.create(ParallelSimulationEngine.chunkSeed(seed, chunk)));
+            long from = chunk * ParallelSimulationEngine.CHUNK_SIZE;
+            long to = Math.min(from + ParallelSimulationEngine.CHUNK_SIZE, seriesCount);
+            for (long index = from; index < to; index++) {
+                // The same drawn numbers for every configuration
+                roulette.spin(spins);
+                for (int l = 0; l < layouts.length; l++) {
+                    for (int r = 0; r < retryCounts.length; r++) {
+                        SeriesPlayer player = players[l][r];
+                        player.play(spins, 0);
+                        int profit = player.getProfit();
+                        double control = player.getHits() - expectedHits[l];
+                        for (int a = 0; a < attemptLimits.length; a++) {
+                            int attemptLimit = attemptLimits[a];
+                            int limitedProfit = index < attemptLimit
+                                    ? player.getLimitedProfit(index, seriesCount, attemptLimit)
+                                    : 0;
+                            for (int b = 0; b < betUnits.length; b++) {
+                                int betUnit = betUnits[b];
+                                SeriesStatistics configuration = statistics[index(l, r, b, a)];
+                                configuration.addSeries(index, profit * betUnit, player.getDots(), player.getLosses(),
+                                        player.getFirstFailureRow(), limitedProfit * betUnit);
+                                configuration.addSample(profit * betUnit, player.getDots(), control);
+                            }
+                        }
+                    }
+                }
+            }
+            return statistics;
+        }
+    }
+
+    private static class SweepTask extends RecursiveTask<SeriesStatistics[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Grid grid;
+        private final long fromChunk;
+        private final long toChunk;
+
+        SweepTask(Grid grid, long fromChunk, long toChunk) {
+            this.grid = grid;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected SeriesStatistics[] compute() {
+            if (toChunk - fromChunk == 1) {
+                long allocated = SimulationMetrics.threadAllocatedBytes();
+                SeriesStatistics[] statistics = grid.playChunk(fromChunk);
+                SimulationMetrics.getDefault().allocatedSince(allocated,
+                        statistics.length > 0 ? statistics[0].getSeriesCount() : 0);
+                return statistics;
+            }
+            long middle = (fromChunk + toChunk) >>> 1;
+            SweepTask left = new SweepTask(grid, fromChunk, middle);
+            SweepTask right = new SweepTask(grid, middle, toChunk);
+            right.fork();
+            SeriesStatistics[] statistics = left.compute();
+            SeriesStatistics[] other = right.join();
+            // Always merge left to right, so that a seeded run is reproducible
+            for (int i = 0; i < statistics.length; i++) {
+                statistics[i].merge(other[i]);
+            }
+            return statistics;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package it.campione.roulette;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Random number algorithms available to the {@link Roulette}. Every algorithm
+ * can be created with a seed, for reproducible runs, or without one.
+ *
+ * @author D. Campione
+ *
+ */
+public enum RandomAlgorithm {
+
+    /** The legacy {@link java.util.Random}, synchronized through a CAS. */
+    RANDOM("Random"),
+    SPLITTABLE("SplittableRandom"),
+    L64X128("L64X128MixRandom"),
+    L64X256("L64X256MixRandom"),
+    L128X128("L128X128MixRandom"),
+    XOSHIRO256("Xoshiro256PlusPlus"),
+    XOROSHIRO128("Xoroshiro128PlusPlus");
+
+    private final String algorithmName;
+
+    private RandomAlgorithm(String algorithmName) {
+        this.algorithmName = algorithmName;
+    }
+
+    /**
+     * Returns the name of the algorithm in {@link RandomGeneratorFactory}.
+     */
+    public String getAlgorithmName() {
+        return algorithmName;
+    }
+
+    public RandomSource create() {
+        switch (this) {
+        case RANDOM:
+            return RandomSource.of(new Random());
+        case SPLITTABLE:
+            return RandomSource.of(new SplittableRandom());
+        default:
+            return RandomSource.of(RandomGenerator.of(algorithmName));
+        }
+    }
+
+    /**
+     * Creates a deterministic source: the same seed always gives the same
+     * sequence.
+     */
+    public RandomSource create(long seed) {
+        switch (this) {
+        case RANDOM:
+            return RandomSource.of(new Random(seed));
+        case SPLITTABLE:
+            return RandomSource.of(new SplittableRandom(seed));
+        default:
+            return RandomSource.of(RandomGeneratorFactory.of(algorithmName).create(seed));
+        }
+    }
+
+    /**
+     * Returns the algorithm with the given enum or {@link RandomGeneratorFactory}
+     * name, ignoring the case.
+     */
+    public static RandomAlgorithm fromName(String name) {
+        for (RandomAlgorithm algorithm : values()) {
+            if (algorithm.name().equalsIgnoreCase(name) || algorithm.algorithmName.equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unknown random algorithm: " + name);
+    }
+}
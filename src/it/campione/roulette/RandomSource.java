@@ -0,0 +1,119 @@
+package it.campione.roulette;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Source of the random numbers drawn by the {@link Roulette}. Implementations
+ * are not required to be thread-safe: every thread should use its own source.
+ *
+ * @author D. Campione
+ *
+ */
+public interface RandomSource {
+
+    /** How many pockets are drawn from a single 64-bit value. */
+    int POCKETS_PER_DRAW = 10;
+
+    /** Number of outcomes of {@link #POCKETS_PER_DRAW} pockets, i.e. 37^10. */
+    long POCKETS_PER_DRAW_BOUND = 4808584372417849L;
+
+    /** Number of outcomes of half the pockets of a draw, i.e. 37^5 < 2^31. */
+    int HALF_DRAW_BOUND = 69343957;
+
+    /**
+     * Returns a uniformly distributed value in [0, bound).
+     */
+    int nextInt(int bound);
+
+    /**
+     * Returns a uniformly distributed value in [0, bound).
+     */
+    long nextLong(long bound);
+
+    /**
+     * Fills the range [from, to) of the array with uniformly distributed pocket
+     * indexes in [0, 37). Ten pockets are taken from every 64-bit draw, as the
+     * base-37 digits of a uniform value in [0, 37^10), so the result is exactly
+     * uniform while calling the generator ten times less.
+     */
+    default void nextPockets(int[] out, int from, int to) {
+        int i = from;
+        while (to - i >= POCKETS_PER_DRAW) {
+            long value = nextLong(POCKETS_PER_DRAW_BOUND);
+            // Split in two halves of five digits, so that the digits come from int
+            // divisions by a constant, which are much cheaper than long ones
+            int high = (int) (value / HALF_DRAW_BOUND);
+            int low = (int) (value - high * (long) HALF_DRAW_BOUND);
+            for (int k = 0; k < POCKETS_PER_DRAW / 2; k++) {
+                int quotient = low / CompiledSeries.POCKETS;
+                out[i++] = low - quotient * CompiledSeries.POCKETS;
+                low = quotient;
+            }
+            for (int k = 0; k < POCKETS_PER_DRAW / 2; k++) {
+                int quotient = high / CompiledSeries.POCKETS;
+                out[i++] = high - quotient * CompiledSeries.POCKETS;
+                high = quotient;
+            }
+        }
+        while (i < to) {
+            out[i++] = nextInt(CompiledSeries.POCKETS);
+        }
+    }
+
+    /**
+     * Returns a source drawing from the given generator.
+     */
+    static RandomSource of(RandomGenerator generator) {
+        if (generator instanceof SplittableRandom) {
+            return new SplittableRandomSource((SplittableRandom) generator);
+        }
+        return new GeneratorRandomSource(generator);
+    }
+
+    /**
+     * Source backed by any {@link RandomGenerator}, as for example
+     * {@link java.util.Random} or the L64X128MixRandom algorithm.
+     */
+    final class GeneratorRandomSource implements RandomSource {
+
+        private final RandomGenerator generator;
+
+        GeneratorRandomSource(RandomGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            return generator.nextInt(bound);
+        }
+
+        @Override
+        public long nextLong(long bound) {
+            return generator.nextLong(bound);
+        }
+    }
+
+    /**
+     * Source backed by a {@link SplittableRandom}. Having its own class keeps
+     * the calls to the generator monomorphic in the hot loop.
+     */
+    final class SplittableRandomSource implements RandomSource {
+
+        private final SplittableRandom random;
+
+        SplittableRandomSource(SplittableRandom random) {
+            this.random = random;
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            return random.nextInt(bound);
+        }
+
+        @Override
+        public long nextLong(long bound) {
+            return random.nextLong(bound);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package it.campione.roulette;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of the statistics of seeded runs, which are deterministic.
+ * The key is the compiled series (the losing numbers of every row, so that
+ * equivalent layouts share their results) with the retry count, series
+ * count, bet unit, attempt limit, seed and random algorithm. The least
+ * recently used results are evicted when the estimated size of the cached
+ * statistics exceeds the limit. Concurrent requests of the same missing
+ * result run the simulation once, and share its failure too.
+ * <p>
+ * The cached statistics are shared and must not be modified.
+ *
+ * @author D. Campione
+ *
+ */
+public class ResultCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, CompletableFuture<SeriesStatistics>> pending = new HashMap<>();
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxBytes the most bytes taken by the cached statistics, as
+     *                 estimated from the size of their arrays
+     */
+    public ResultCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Negative cache size");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached statistics of the run, or runs it with the given
+     * function and caches the result.
+     */
+    public SeriesStatistics get(SimulationParameters parameters, RandomAlgorithm randomAlgorithm,
+            Function<SimulationParameters, SeriesStatistics> simulation) {
+        Key key = new Key(parameters, randomAlgorithm);
+        CompletableFuture<SeriesStatistics> future;
+        boolean owner = false;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hit();
+                return entry.statistics;
+            }
+            future = pending.get(key);
+            if (future == null) {
+                misses.incrementAndGet();
+                SimulationMetrics.getDefault().cacheMiss();
+                future = new CompletableFuture<>();
+                pending.put(key, future);
+                owner = true;
+            } else {
+                hit();
+            }
+        }
+        if (!owner) {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            SeriesStatistics statistics = simulation.apply(parameters);
+            synchronized (this) {
+                pending.remove(key);
+                put(key, statistics);
+            }
+            future.complete(statistics);
+            return statistics;
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                pending.remove(key);
+            }
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void hit() {
+        hits.incrementAndGet();
+        SimulationMetrics.getDefault().cacheHit();
+    }
+
+    private void put(Key key, SeriesStatistics statistics) {
+        long size = estimateBytes(key, statistics);
+        if (size > maxBytes) {
+            return;
+        }
+        entries.put(key, new Entry(statistics, size));
+        bytes += size;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= iterator.next().bytes;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    static long estimateBytes(Key key, SeriesStatistics statistics) {
+        long rows = statistics.getRowCount();
+        long histograms = rows + (statistics.getRetryCount() + 2L) * (rows + 1);
+        return 256 + 8 * (histograms + key.masks.length);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private static class Entry {
+
+        private final SeriesStatistics statistics;
+        private final long bytes;
+
+        Entry(SeriesStatistics statistics, long bytes) {
+            this.statistics = statistics;
+            this.bytes = bytes;
+        }
+    }
+
+    static final class Key {
+
+        private final long[] masks;
+        private final int retryCount;
+        private final long seriesCount;
+        private final int betUnit;
+        private final int attemptLimit;
+        private final long seed;
+        private final RandomAlgorithm randomAlgorithm;
+        private final int hash;
+
+        Key(SimulationParameters parameters, RandomAlgorithm randomAlgorithm) {
+            this.masks = CompiledSeries.compile(parameters.getBets()).getMasks();
+            this.retryCount = parameters.getRetryCount();
+            this.seriesCount = parameters.getSeriesCount();
+            this.betUnit = parameters.getBetUnit();
+            this.attemptLimit = parameters.getAttemptLimit();
+            this.seed = parameters.getSeed();
+            this.randomAlgorithm = randomAlgorithm;
+            int h = Arrays.hashCode(masks);
+            h = 31 * h + retryCount;
+            h = 31 * h + Long.hashCode(seriesCount);
+            h = 31 * h + betUnit;
+            h = 31 * h + attemptLimit;
+            h = 31 * h + Long.hashCode(seed);
+            this.hash = 31 * h + randomAlgorithm.ordinal();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && retryCount == other.retryCount && seriesCount == other.seriesCount
+                    && betUnit == other.betUnit && attemptLimit == other.attemptLimit && seed == other.seed
+                    && randomAlgorithm == other.randomAlgorithm && Arrays.equals(masks, other.masks);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
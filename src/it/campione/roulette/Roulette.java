@@ -1,6 +1,7 @@
 package it.campione.roulette;
 
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 /**
  * 
@@ -9,15 +10,41 @@ import java.util.Random;
  *
  */
 public class Roulette {
-    private Random random;
+    private RandomSource random;
     private static final int[] numbers = { 0, 32, 15, 19, 4, 21, 2, 25, 17, 34, 6, 27, 13, 36, 11, 30, 8, 23, 10, 5, 24,
             16, 33, 1, 20, 14, 31, 9, 22, 18, 29, 7, 28, 12, 35, 3, 26 };
 
     public Roulette() {
-        random = new Random();
+        this(new Random());
+    }
+
+    public Roulette(RandomGenerator random) {
+        this(RandomSource.of(random));
+    }
+
+    public Roulette(RandomSource random) {
+        this.random = random;
     }
 
     public int spin() {
         return numbers[random.nextInt(numbers.length)];
     }
+
+    /**
+     * Fills the whole array with drawn numbers.
+     */
+    public void spin(int[] out) {
+        spin(out, 0, out.length);
+    }
+
+    /**
+     * Fills the range [from, to) of the array with drawn numbers, taking the
+     * random pockets from the source in batches.
+     */
+    public void spin(int[] out, int from, int to) {
+        random.nextPockets(out, from, to);
+        for (int i = from; i < to; i++) {
+            out[i] = numbers[out[i]];
+        }
+    }
 }
@@ -1,14 +1,14 @@
 package it.campione.roulette;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
+import javax.management.JMException;
+
 import javafx.animation.FadeTransition;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
@@ -20,17 +20,29 @@ import javafx.animation.TranslateTransition;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Control;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.SelectionMode;
 import javafx.scene.control.SplitPane;
 import javafx.scene.control.TextArea;
+import javafx.scene.control.TextFormatter;
 import javafx.scene.effect.InnerShadow;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
@@ -56,52 +68,104 @@ import javafx.util.Duration;
  */
 public class RouletteGameApp extends Application {
 
+    /** Height of a line of the result, fixed so that the list never measures its cells. */
+    private static final double RESULT_CELL_SIZE = 20;
+
+    /** Invalid rows of the series listed under it. */
+    private static final int MAX_INVALID_ROWS_SHOWN = 10;
+
+    /**
+     * Directory of the journal of the extractions, under the home of the user
+     * unless given by the "roulette.journal" system property.
+     */
+    private static final Path JOURNAL_DIRECTORY = Paths.get(System.getProperty("roulette.journal",
+            Paths.get(System.getProperty("user.home"), ".roulette", "journal").toString()));
+
+    /** Bytes of the older journal segments kept when an extraction starts. */
+    private static final long JOURNAL_RETAINED_BYTES = 1L << 30;
+
+    private static final KeyCombination COPY = new KeyCodeCombination(KeyCode.C, KeyCombination.SHORTCUT_DOWN);
+
     private Stage primaryStage;
     private Button startButton;
     private Button openRouletteButton;
+    private Button cancelButton;
+    private ProgressBar progressBar;
+    private Label progressLabel;
     private TextArea seriesTextArea;
-    private TextArea resultTextArea;
+    private ListView<String> resultListView;
     private ComboBox<Integer> retryComboBox;
     private ComboBox<Integer> seriesComboBox;
     private ComboBox<String> betAmountComboBox;
     private ComboBox<Integer> attemptLimitComboBox;
+    private CheckBox journalCheckBox;
     private VBox controlsBox;
     private VBox leftBox;
     private VBox rightBox;
     private List<Bet> bets;
+    private SeriesModel seriesModel;
+    private Label seriesStatusLabel;
     private Path seriesFilePath;
-    private List<Integer> extractedNumbers;
+    private ExtractionTask extractionTask;
 
     @Override
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
 
-        Locale locale = new Locale("en", "US"); // or "it", "IT" for Italian
+        Locale locale = Locale.forLanguageTag("en-US"); // or "it", "IT" for Italian
         Messages.setLocale(locale);
 
+        try {
+            SimulationMetrics.getDefault().register();
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+
         seriesFilePath = Paths.get("serie.txt");
-        bets = loadBetsFromFile();
+        String series = loadSeriesFromFile();
+        seriesModel = new SeriesModel(series);
+        bets = seriesModel.getBets();
         primaryStage.setTitle(Messages.getString("applicationTitle"));
 
         seriesTextArea = new TextArea();
         seriesTextArea.setPromptText(Messages.getString("excludedCouples"));
-        seriesTextArea.setText(loadSeriesFromFile());
+        seriesTextArea.setText(series);
+        // Every edit re-parses only the lines it touches
+        seriesTextArea.setTextFormatter(new TextFormatter<String>(change -> {
+            String text = filterInput(change.getText());
+            if (!text.equals(change.getText())) {
+                // Strip now what the text area would strip, so that the model keeps its text
+                int caret = change.getRangeStart() + text.length();
+                change.setText(text);
+                change.selectRange(caret, caret);
+            }
+            seriesModel.replace(change.getRangeStart(), change.getRangeEnd(), text);
+            updateSeriesStatus();
+            return change;
+        }));
         seriesTextArea.getStyleClass().add("text-area");
         seriesTextArea.setWrapText(true);
 
-        resultTextArea = new TextArea();
-        resultTextArea.setPromptText(Messages.getString("outcomeOfTheDraw"));
-        resultTextArea.getStyleClass().add("text-area");
-        resultTextArea.setWrapText(false);
-        resultTextArea.setEditable(false);
+        // Only the visible lines of the result are formatted and laid out
+        resultListView = new ListView<>();
+        resultListView.setPlaceholder(new Label(Messages.getString("outcomeOfTheDraw")));
+        resultListView.getStyleClass().add("result-list");
+        resultListView.setFixedCellSize(RESULT_CELL_SIZE);
+        resultListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        resultListView.setOnKeyPressed(e -> {
+            if (COPY.match(e)) {
+                copySelectedResultLines();
+            }
+        });
 
         applyTransitions(seriesTextArea);
-        applyTransitions(resultTextArea);
+        applyTransitions(resultListView);
 
         retryComboBox = new ComboBox<>(FXCollections.observableArrayList(0, 1, 2, 3));
         retryComboBox.getSelectionModel().selectFirst();
 
-        seriesComboBox = new ComboBox<>(FXCollections.observableArrayList(1, 2, 5, 10, 50, 100));
+        seriesComboBox = new ComboBox<>(FXCollections.observableArrayList(1, 2, 5, 10, 50, 100, 1000, 10000, 100000,
+                1000000));
         seriesComboBox.getSelectionModel().selectFirst();
 
         betAmountComboBox = new ComboBox<>(FXCollections.observableArrayList(
@@ -117,6 +181,16 @@ public class RouletteGameApp extends Application {
         startButton.setOnAction(e -> startExtraction());
         applyButtonEffects(startButton);
 
+        cancelButton = new Button(Messages.getString("cancelExtraction"));
+        cancelButton.getStyleClass().add("button");
+        cancelButton.setOnAction(e -> cancelExtraction());
+        cancelButton.setDisable(true);
+        applyButtonEffects(cancelButton);
+
+        progressBar = new ProgressBar(0);
+        progressBar.setMaxWidth(Double.MAX_VALUE);
+        progressLabel = new Label();
+
         openRouletteButton = new Button(Messages.getString("playRoulette"));
         openRouletteButton.getStyleClass().add("button");
         openRouletteButton.setOnAction(e -> openRouletteWindow());
@@ -127,10 +201,13 @@ public class RouletteGameApp extends Application {
         attemptLimitComboBox.getSelectionModel().selectFirst();
         attemptLimitComboBox.setDisable(false); // Initially enabled
 
+        journalCheckBox = new CheckBox(Messages.getString("recordJournal"));
+
         controlsBox = new VBox(10, new Label(Messages.getString("plays")), seriesComboBox,
                 new Label(Messages.getString("retryOnLoss")), retryComboBox,
                 new Label(Messages.getString("betsOnTheTable")), betAmountComboBox,
-                new Label(Messages.getString("sumEURUpTo")), attemptLimitComboBox, startButton, openRouletteButton);
+                new Label(Messages.getString("sumEURUpTo")), attemptLimitComboBox, journalCheckBox, startButton,
+                cancelButton, progressBar, progressLabel, openRouletteButton);
         controlsBox.setPadding(new Insets(10));
 
         seriesComboBox.getSelectionModel().selectedItemProperty().addListener((options, oldValue, newValue) -> {
@@ -143,12 +220,15 @@ public class RouletteGameApp extends Application {
         });
 
         VBox.setVgrow(seriesTextArea, Priority.ALWAYS);
-        VBox.setVgrow(resultTextArea, Priority.ALWAYS);
+        VBox.setVgrow(resultListView, Priority.ALWAYS);
 
-        leftBox = new VBox(10, new Label(Messages.getString("excludedCouples")), seriesTextArea);
+        seriesStatusLabel = new Label();
+        updateSeriesStatus();
+
+        leftBox = new VBox(10, new Label(Messages.getString("excludedCouples")), seriesTextArea, seriesStatusLabel);
         leftBox.getChildren().get(0).getStyleClass().add("label");
 
-        rightBox = new VBox(10, new Label(Messages.getString("outcomeOfTheDraw")), resultTextArea);
+        rightBox = new VBox(10, new Label(Messages.getString("outcomeOfTheDraw")), resultListView);
         rightBox.getChildren().get(0).getStyleClass().add("label");
 
         SplitPane splitPane = new SplitPane(leftBox, rightBox);
@@ -177,22 +257,22 @@ public class RouletteGameApp extends Application {
         primaryStage.show();
     }
 
-    private void applyTransitions(TextArea textArea) {
-        FadeTransition fadeTransition = new FadeTransition(Duration.millis(1000), textArea);
+    private void applyTransitions(Control control) {
+        FadeTransition fadeTransition = new FadeTransition(Duration.millis(1000), control);
         fadeTransition.setFromValue(0.0);
         fadeTransition.setToValue(1.0);
 
-        TranslateTransition translateTransition = new TranslateTransition(Duration.millis(1000), textArea);
+        TranslateTransition translateTransition = new TranslateTransition(Duration.millis(1000), control);
         translateTransition.setFromX(-50);
         translateTransition.setToX(0);
 
-        ScaleTransition scaleTransition = new ScaleTransition(Duration.millis(1000), textArea);
+        ScaleTransition scaleTransition = new ScaleTransition(Duration.millis(1000), control);
         scaleTransition.setFromX(0.8);
         scaleTransition.setFromY(0.8);
         scaleTransition.setToX(1.0);
         scaleTransition.setToY(1.0);
 
-        RotateTransition rotateTransition = new RotateTransition(Duration.millis(1000), textArea);
+        RotateTransition rotateTransition = new RotateTransition(Duration.millis(1000), control);
         rotateTransition.setByAngle(360);
 
         ParallelTransition parallelTransition = new ParallelTransition(fadeTransition, translateTransition,
@@ -226,175 +306,122 @@ public class RouletteGameApp extends Application {
         });
     }
 
+    /**
+     * Removes the characters that a text area drops from the inserted text:
+     * the control characters but new lines and tabs (carriage returns
+     * included).
+     */
+    private static String filterInput(String text) {
+        StringBuilder filtered = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean invalid = c == 0x7F || c < 0x20 && c != '\n' && c != '\t';
+            if (invalid && filtered == null) {
+                filtered = new StringBuilder(text.length()).append(text, 0, i);
+            } else if (!invalid && filtered != null) {
+                filtered.append(c);
+            }
+        }
+        return filtered != null ? filtered.toString() : text;
+    }
+
     private void startExtraction() {
-        List<Bet> runtimeBets = parseBetsFromTextArea();
+        if (seriesModel.length() != seriesTextArea.getLength()) {
+            seriesModel = new SeriesModel(seriesTextArea.getText()); // Out of sync, parse it again
+        }
+        List<Bet> runtimeBets = seriesModel.getBets();
         if (!runtimeBets.equals(bets)) {
-            saveBetsToFile(runtimeBets);
+            try {
+                SeriesFile.write(seriesFilePath, runtimeBets);
+                bets = runtimeBets;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
 
         // Add neon effect to text area borders
         addNeonEffect(seriesTextArea);
-        addNeonEffect(resultTextArea);
+        addNeonEffect(resultListView);
 
         int retryCount = retryComboBox.getValue();
         int seriesCount = seriesComboBox.getValue();
         int betAmount = getBetAmount(); // Get your selected bet amount
         int betUnit = betAmount / 35; // Calculate the amount per bet number
-        Roulette roulette = new Roulette();
-        List<StringBuilder> results = new ArrayList<>();
-        for (int i = 0; i < runtimeBets.size(); i++) {
-            results.add(new StringBuilder());
-        }
-        extractedNumbers = new ArrayList<>();
-        int totalDots = 0;
-        int firstFailureRow = -1;
-        int firstFailureSeries = -1;
-        int totalProfitLoss = 0;
-
-        List<Integer> columnProfits = new ArrayList<>();
-
-        for (int series = 0; series < seriesCount; series++) {
-            boolean stopGame = false;
-            int failuresCount = 0;
-            int columnProfitLoss = 0;
-
-            for (int i = 0; i < runtimeBets.size(); i++) {
-                Bet bet = runtimeBets.get(i);
-
-                // Always pull out the number
-                int result = roulette.spin();
-                extractedNumbers.add(result); // Add the drawn number to the list
-
-                if (stopGame) {
-                    if (failuresCount < retryCount + 1) {
-                        if (bet.shouldIgnore()) {
-                            results.get(i).append("=");
-                            continue;
-                        } else {
-                            stopGame = false;
-                        }
-                    } else {
-                        if (bet.shouldIgnore()) {
-                            results.get(i).append("=");
-                        } else {
-                            results.get(i).append("X");
-                        }
-                        continue;
-                    }
-                }
-
-                if (bet.shouldIgnore()) {
-                    results.get(i).append("=");
-                    continue;
-                }
-
-                if (bet.isWinningNumber(result)) {
-                    results.get(i).append(".");
-                    totalDots++;
-                    columnProfitLoss += betUnit; // Increment with amount by number
-                } else {
-                    results.get(i).append("X");
-                    stopGame = true;
-                    failuresCount++; // Increase failure count
-                    columnProfitLoss -= betUnit * 35; // Multiply by Amount by Number
-                    if (firstFailureRow == -1
-                            || (i < firstFailureRow || (i == firstFailureRow && series < firstFailureSeries))) {
-                        firstFailureRow = i;
-                        firstFailureSeries = series;
-                    }
-                    if (failuresCount > retryCount + 1) {
-                        // Consider everything that follows as failure
-                        for (int j = i + 1; j < runtimeBets.size(); j++) {
-                            Bet nextBet = runtimeBets.get(j);
-                            if (nextBet.shouldIgnore()) {
-                                results.get(j).append("=");
-                            } else {
-                                results.get(j).append("X");
-                            }
-                        }
-                        break;
-                    }
-                }
-            }
+        int attemptLimit = attemptLimitComboBox.getValue();
 
-            columnProfits.add(columnProfitLoss);
-            totalProfitLoss += columnProfitLoss;
-        }
+        // Run the extraction in background, so that the window stays responsive
+        extractionTask = new ExtractionTask(runtimeBets, retryCount, seriesCount, betUnit, attemptLimit,
+                journalCheckBox.isSelected());
+        progressBar.progressProperty().bind(extractionTask.progressProperty());
+        progressLabel.textProperty().bind(extractionTask.messageProperty());
+        extractionTask.setOnSucceeded(e -> {
+            SimulationMetrics.Timer renderTimer = SimulationMetrics.getDefault().getRenderTimer();
+            long renderStart = renderTimer.start();
+            resultListView.setItems(FXCollections.observableList(SimulationReport.lines(extractionTask.getValue())));
+            resultListView.scrollTo(0);
+            resultListView.layout();
+            renderTimer.stop(renderStart);
+            extractionFinished();
+            showJournalFailure();
+        });
+        extractionTask.setOnCancelled(e -> {
+            extractionFinished();
+            progressLabel.setText(Messages.getString("extractionCancelled"));
+            showJournalFailure();
+        });
+        extractionTask.setOnFailed(e -> {
+            extractionTask.getException().printStackTrace();
+            extractionFinished();
+            progressLabel.setText(Messages.getString("extractionFailed") + ": " + extractionTask.getException());
+        });
 
-        StringBuilder resultText = new StringBuilder();
-        for (int i = 0; i < runtimeBets.size(); i++) {
-            resultText.append(results.get(i).toString()).append(" ").append(runtimeBets.get(i));
-            if (seriesCount == 1 && i < extractedNumbers.size()) {
-                int extractedNumber = extractedNumbers.get(i);
-                String characteristics = getNumberCharacteristics(extractedNumber);
-                resultText.append(", " + Messages.getString("numberDrawn") + ": ").append(extractedNumber).append(" (")
-                        .append(characteristics).append(")");
-            }
-            resultText.append("\n");
-        }
+        startButton.setDisable(true);
+        cancelButton.setDisable(false);
 
-        double averageDots = seriesCount > 0 ? (double) totalDots / seriesCount : 0;
-        resultText.append("\n" + Messages.getString("averagePoints") + ": ").append(averageDots);
+        Thread extractionThread = new Thread(extractionTask, "extraction");
+        extractionThread.setDaemon(true);
+        extractionThread.start();
+    }
 
-        if (firstFailureRow != -1) {
-            resultText.append("\n" + Messages.getString("theFirstFailureIsRecordedAfter") + " ")
-                    .append(firstFailureRow + 1).append(" " + Messages.getString("attemptsInTheSeries") + " ")
-                    .append(firstFailureSeries + 1).append(".");
-        } else {
-            resultText.append("\n" + Messages.getString("thereWereNoFailuresInTheSeries"));
+    /**
+     * Tells the user, in the progress label, that the journal of the
+     * extraction could not be written.
+     */
+    private void showJournalFailure() {
+        IOException failure = extractionTask.getJournalFailure();
+        if (failure != null) {
+            progressLabel.setText(Messages.getString("journalNotWritten") + ": " + failure.getMessage());
         }
+    }
 
-        resultText.append("\n\n**" + Messages.getString("gainLossForEachSeries") + "**\n");
-        for (int i = 0; i < columnProfits.size(); i++) {
-            resultText.append(Messages.getString("series") + " ").append(i + 1).append(": ")
-                    .append(columnProfits.get(i)).append(Messages.getString("euro") + "\n");
+    private void cancelExtraction() {
+        if (extractionTask != null) {
+            extractionTask.cancel();
         }
-        resultText.append("\n" + Messages.getString("totalSum") + ": ").append(totalProfitLoss)
-                .append(Messages.getString("euro"));
-
-        // Calculate gain/loss until set attempt
-        int attemptLimit = attemptLimitComboBox.getValue();
-        if (attemptLimit != 0) {
-            int limitedProfitLoss = 0;
-            int attempts = 0;
-
-            for (int i = 0; i < results.size(); i++) {
-                String column = results.get(i).toString();
-                for (char c : column.toCharArray()) {
-                    if (attempts >= attemptLimit) {
-                        break;
-                    }
-                    if (c == '.') {
-                        limitedProfitLoss += betUnit; // Increment with amount by number
-                    } else if (c == 'X') {
-                        limitedProfitLoss -= betUnit * 35; // Multiply by Amount by Number
-                    }
-                    attempts++;
-                }
-            }
-
-            // If the capped sum is less than the aggregate sum and the aggregate sum is
-            // strictly negative, use the aggregate sum
-            if (limitedProfitLoss < totalProfitLoss && totalProfitLoss < 0) {
-                limitedProfitLoss = totalProfitLoss;
-            }
+    }
 
-            resultText.append("\n" + Messages.getString("gainLossUpToAttempt") + " ").append(attemptLimit).append(": ")
-                    .append(limitedProfitLoss).append(Messages.getString("euro"));
-        }
+    private void copySelectedResultLines() {
+        ClipboardContent content = new ClipboardContent();
+        content.putString(String.join("\n", resultListView.getSelectionModel().getSelectedItems()));
+        Clipboard.getSystemClipboard().setContent(content);
+    }
 
-        resultTextArea.setText(resultText.toString());
+    private void extractionFinished() {
+        progressBar.progressProperty().unbind();
+        progressLabel.textProperty().unbind();
+        startButton.setDisable(false);
+        cancelButton.setDisable(true);
 
         // Remove the neon effect after completing the extraction
         removeNeonEffect(seriesTextArea);
-        removeNeonEffect(resultTextArea);
+        removeNeonEffect(resultListView);
     }
 
-    private void addNeonEffect(TextArea textArea) {
+    private void addNeonEffect(Control control) {
         InnerShadow innerShadow = new InnerShadow();
         innerShadow.setColor(Color.TRANSPARENT);
 
-        textArea.setEffect(innerShadow);
+        control.setEffect(innerShadow);
 
         Timeline timeline = new Timeline(
                 new KeyFrame(Duration.ZERO, new KeyValue(innerShadow.colorProperty(), Color.TRANSPARENT)),
@@ -402,21 +429,21 @@ public class RouletteGameApp extends Application {
         timeline.play();
     }
 
-    private void removeNeonEffect(TextArea textArea) {
-        InnerShadow innerShadow = (InnerShadow) textArea.getEffect();
+    private void removeNeonEffect(Control control) {
+        InnerShadow innerShadow = (InnerShadow) control.getEffect();
 
         if (innerShadow == null) {
             innerShadow = new InnerShadow();
             innerShadow.setColor(Color.BLUE);
-            textArea.setEffect(innerShadow);
+            control.setEffect(innerShadow);
         }
 
         Timeline timeline = new Timeline(
                 new KeyFrame(Duration.ZERO, new KeyValue(innerShadow.colorProperty(), Color.BLUE)),
                 new KeyFrame(Duration.seconds(1), new KeyValue(innerShadow.colorProperty(), Color.TRANSPARENT)));
         timeline.setOnFinished(e -> {
-            textArea.setEffect(null);
-            textArea.setStyle(""); // Restore the original style from the CSS file
+            control.setEffect(null);
+            control.setStyle(""); // Restore the original style from the CSS file
         });
         timeline.play();
     }
@@ -458,63 +485,24 @@ public class RouletteGameApp extends Application {
         }
     }
 
-    private List<Bet> parseBetsFromTextArea() {
-        List<Bet> runtimeBets = new ArrayList<>();
-        String[] lines = seriesTextArea.getText().split("\\n");
-        for (String line : lines) {
-            String[] numbers = line.split(" ");
-            if (numbers.length == 2) {
-                try {
-                    int bet1 = Integer.parseInt(numbers[0].trim());
-                    int bet2 = Integer.parseInt(numbers[1].trim());
-                    if ((bet1 >= 0 && bet1 <= 36) && (bet2 >= 0 && bet2 <= 36)) {
-                        runtimeBets.add(new Bet(bet1, bet2));
-                    } else {
-                        runtimeBets.add(new Bet(-1, -1)); // Ignore
-                    }
-                } catch (NumberFormatException e) {
-                    runtimeBets.add(new Bet(-1, -1)); // Ignore
-                }
-            } else {
-                runtimeBets.add(new Bet(-1, -1)); // Ignore
-            }
+    /**
+     * Shows the first rows of the series that are not valid couples.
+     */
+    private void updateSeriesStatus() {
+        int invalidCount = seriesModel.getInvalidLineCount();
+        if (invalidCount == 0) {
+            seriesStatusLabel.setText("");
+            return;
         }
-        return runtimeBets;
-    }
-
-    private List<Bet> loadBetsFromFile() {
-        List<Bet> loadedBets = new ArrayList<>();
-        try {
-            List<String> lines = Files.readAllLines(seriesFilePath);
-            for (String line : lines) {
-                String[] numbers = line.split(" ");
-                if (numbers.length == 2) {
-                    try {
-                        int bet1 = Integer.parseInt(numbers[0].trim());
-                        int bet2 = Integer.parseInt(numbers[1].trim());
-                        loadedBets.add(new Bet(bet1, bet2));
-                    } catch (NumberFormatException e) {
-                        loadedBets.add(new Bet(-1, -1)); // Ignore
-                    }
-                } else {
-                    loadedBets.add(new Bet(-1, -1)); // Ignore
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        StringBuilder text = new StringBuilder(Messages.getString("invalidRows")).append(": ");
+        List<Integer> invalidLines = seriesModel.getInvalidLines(MAX_INVALID_ROWS_SHOWN);
+        for (int i = 0; i < invalidLines.size(); i++) {
+            text.append(i > 0 ? ", " : "").append(invalidLines.get(i) + 1);
         }
-        return loadedBets;
-    }
-
-    private void saveBetsToFile(List<Bet> bets) {
-        try (BufferedWriter writer = Files.newBufferedWriter(seriesFilePath)) {
-            for (Bet bet : bets) {
-                writer.write(bet.toString());
-                writer.newLine();
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (invalidCount > invalidLines.size()) {
+            text.append(", ...");
         }
+        seriesStatusLabel.setText(text.toString());
     }
 
     private String loadSeriesFromFile() {
@@ -618,23 +606,6 @@ public class RouletteGameApp extends Application {
         parallelTransition.play();
     }
 
-    private String getNumberCharacteristics(int number) {
-        String color;
-        if (number == 0) {
-            color = Messages.getString("green");
-        } else if ((number >= 1 && number <= 10) || (number >= 19 && number <= 28)) {
-            color = (number % 2 == 0) ? Messages.getString("black") : Messages.getString("red");
-        } else {
-            color = (number % 2 == 0) ? Messages.getString("red") : Messages.getString("black");
-        }
-
-        String parity = (number % 2 == 0) ? Messages.getString("even") : Messages.getString("odd");
-        String range = (number >= 1 && number <= 18) ? Messages.getString("low")
-                : (number >= 19 && number <= 36) ? Messages.getString("high") : "";
-
-        return color + ", " + parity + ", " + range;
-    }
-
     private void setupLanguageSwitcher(VBox controlsBox) {
         // Upload flag images
         ImageView itFlag = new ImageView(new Image(getClass().getResourceAsStream("/images/it_flag.png")));
@@ -687,7 +658,7 @@ public class RouletteGameApp extends Application {
     }
 
     private void switchLanguage(String lang, String country) {
-        Locale locale = new Locale(lang, country);
+        Locale locale = Locale.forLanguageTag(lang + "-" + country);
         Messages.setLocale(locale);
 
         // Update the interface texts
@@ -697,9 +668,12 @@ public class RouletteGameApp extends Application {
     private void updateTexts() {
         primaryStage.setTitle(Messages.getString("applicationTitle"));
         seriesTextArea.setPromptText(Messages.getString("excludedCouples"));
-        resultTextArea.setPromptText(Messages.getString("outcomeOfTheDraw"));
+        resultListView.setPlaceholder(new Label(Messages.getString("outcomeOfTheDraw")));
+        resultListView.refresh(); // The lines are formatted in the new language
         startButton.setText(Messages.getString("startExtraction"));
+        cancelButton.setText(Messages.getString("cancelExtraction"));
         openRouletteButton.setText(Messages.getString("playRoulette"));
+        journalCheckBox.setText(Messages.getString("recordJournal"));
 
         // Update texts in ComboBoxes
         betAmountComboBox.setItems(FXCollections.observableArrayList(Messages.getString("EUR35_EUR1PerRouletteNumber"),
@@ -719,10 +693,95 @@ public class RouletteGameApp extends Application {
         controlsBox.getChildren().addAll(new Label(Messages.getString("plays")), seriesComboBox,
                 new Label(Messages.getString("retryOnLoss")), retryComboBox,
                 new Label(Messages.getString("betsOnTheTable")), betAmountComboBox,
-                new Label(Messages.getString("sumEURUpTo")), attemptLimitComboBox, startButton, openRouletteButton);
+                new Label(Messages.getString("sumEURUpTo")), attemptLimitComboBox, journalCheckBox, startButton,
+                cancelButton, progressBar, progressLabel, openRouletteButton);
+
+        leftBox.getChildren().setAll(new Label(Messages.getString("excludedCouples")), seriesTextArea,
+                seriesStatusLabel);
+        updateSeriesStatus();
+        rightBox.getChildren().setAll(new Label(Messages.getString("outcomeOfTheDraw")), resultListView);
+    }
+
+    /**
+     * Plays the extraction outside the JavaFX Application Thread; its report is
+     * formatted by the result list, line by line as the lines are shown. If so
+     * chosen, its series are recorded in the journal, after pruning the older
+     * segments to {@link #JOURNAL_RETAINED_BYTES}; the journal is best effort,
+     * the extraction goes on without it if it cannot be written. The progress
+     * is published at most every {@link #PROGRESS_INTERVAL_NANOS} nanoseconds.
+     */
+    private static class ExtractionTask extends Task<SimulationResult> implements SimulationMonitor {
+
+        private static final long PROGRESS_INTERVAL_NANOS = 100_000_000L;
+
+        private final List<Bet> bets;
+        private final int retryCount;
+        private final int seriesCount;
+        private final int betUnit;
+        private final int attemptLimit;
+        private final boolean journaled;
+        private long lastProgress;
+        private volatile IOException journalFailure;
+
+        ExtractionTask(List<Bet> bets, int retryCount, int seriesCount, int betUnit, int attemptLimit,
+                boolean journaled) {
+            this.bets = bets;
+            this.retryCount = retryCount;
+            this.seriesCount = seriesCount;
+            this.betUnit = betUnit;
+            this.attemptLimit = attemptLimit;
+            this.journaled = journaled;
+        }
+
+        /**
+         * Returns the error that stopped the journal, null if none.
+         */
+        IOException getJournalFailure() {
+            return journalFailure;
+        }
 
-        leftBox.getChildren().setAll(new Label(Messages.getString("excludedCouples")), seriesTextArea);
-        rightBox.getChildren().setAll(new Label(Messages.getString("outcomeOfTheDraw")), resultTextArea);
+        @Override
+        protected SimulationResult call() {
+            lastProgress = System.nanoTime();
+            JournalWriter journal = null;
+            if (journaled) {
+                try {
+                    JournalWriter.prune(JOURNAL_DIRECTORY, JOURNAL_RETAINED_BYTES);
+                    journal = new JournalWriter(JOURNAL_DIRECTORY);
+                } catch (IOException e) {
+                    journalFailure = e;
+                }
+            }
+            SimulationEngine engine = new SimulationEngine();
+            engine.setJournal(journal);
+            try {
+                return engine.run(bets, retryCount, seriesCount, betUnit, attemptLimit, this);
+            } finally {
+                IOException failure = engine.getJournalFailure();
+                if (journal != null) {
+                    try {
+                        journal.close();
+                    } catch (IOException e) {
+                        failure = failure != null ? failure : e;
+                    }
+                }
+                if (failure != null) {
+                    journalFailure = failure;
+                }
+            }
+        }
+
+        @Override
+        public void seriesCompleted(long completedSeries, long totalSeries, long totalProfitLoss) {
+            long now = System.nanoTime();
+            if (completedSeries < totalSeries && now - lastProgress < PROGRESS_INTERVAL_NANOS) {
+                return;
+            }
+            lastProgress = now;
+            updateProgress(completedSeries, totalSeries);
+            updateMessage(Messages.getString("series") + " " + completedSeries + "/" + totalSeries + ", "
+                    + Messages.getString("totalSum") + ": " + totalProfitLoss + Messages.getString("euro"));
+        }
     }
 
     public static void main(String... args) {
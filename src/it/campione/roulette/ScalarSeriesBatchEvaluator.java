@@ -0,0 +1,53 @@
+package it.campione.roulette;
+
+/**
+ * The {@link SeriesBatchEvaluator} that plays the series one after the other,
+ * as the {@link SeriesPlayer} does.
+ *
+ * @author D. Campione
+ *
+ */
+class ScalarSeriesBatchEvaluator extends SeriesBatchEvaluator {
+
+    ScalarSeriesBatchEvaluator(CompiledSeries series, int retryCount, int capacity) {
+        super(series, retryCount, capacity);
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return false;
+    }
+
+    @Override
+    protected void evaluateSeries(int count) {
+        for (int s = 0; s < count; s++) {
+            int failuresCount = 0;
+            int wins = 0;
+            int firstFailure = -1;
+            int hitCount = 0;
+            for (int i = 0, index = s * rowCount; i < rowCount; i++, index++) {
+                long mask = series.getMask(i);
+                if (mask < 0) {
+                    continue;
+                }
+                int hit = (int) (mask >>> spins[index]) & 1;
+                hitCount += hit;
+                if (failuresCount > retryCount) {
+                    continue;
+                }
+                if (hit == 0) {
+                    wins++;
+                } else {
+                    failuresCount++;
+                    if (firstFailure == -1) {
+                        firstFailure = i;
+                    }
+                }
+            }
+            dots[s] = wins;
+            losses[s] = failuresCount;
+            firstFailureRows[s] = firstFailure;
+            hits[s] = hitCount;
+        }
+    }
+}
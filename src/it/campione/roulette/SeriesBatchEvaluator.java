@@ -0,0 +1,148 @@
+package it.campione.roulette;
+
+/**
+ * Plays many series of the same {@link CompiledSeries} at once, so that an
+ * implementation can evaluate a row for several series with one instruction.
+ * The drawn numbers are kept series by series, as a {@link Roulette} draws
+ * them, so a batch draws exactly the numbers of that many {@link SeriesPlayer}
+ * games and needs no transposition. {@link #create} returns the evaluator built
+ * on the Vector API when the jdk.incubator.vector module is available (run
+ * with --add-modules jdk.incubator.vector) and the scalar one otherwise. Both
+ * give the same outcomes as the {@link SeriesPlayer}. An evaluator must be
+ * used by a single thread.
+ *
+ * @author D. Campione
+ *
+ */
+public abstract class SeriesBatchEvaluator {
+
+    /** Class of the vectorized evaluator, built separately from the vector folder. */
+    private static final String VECTOR_EVALUATOR = "it.campione.roulette.vector.VectorSeriesBatchEvaluator";
+
+    /** Set this system property to false to always use the scalar evaluator. */
+    public static final String VECTOR_PROPERTY = "roulette.vector";
+
+    /**
+     * The capacity is rounded up to a multiple of this, so that whole vectors
+     * of up to 64 lanes can be gathered and stored at any multiple of their
+     * length within the capacity.
+     */
+    public static final int CAPACITY_ALIGNMENT = 64;
+
+    protected final CompiledSeries series;
+    protected final int retryCount;
+    protected final int rowCount;
+    protected final int capacity;
+    /** The drawn numbers: the one of series s on row r is at s * rowCount + r. */
+    protected final int[] spins;
+    protected final int[] dots;
+    protected final int[] losses;
+    protected final int[] firstFailureRows;
+    protected final int[] hits;
+
+    protected SeriesBatchEvaluator(CompiledSeries series, int retryCount, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+        this.series = series;
+        this.retryCount = retryCount;
+        this.rowCount = series.getRowCount();
+        this.capacity = (int) ((capacity + CAPACITY_ALIGNMENT - 1L) / CAPACITY_ALIGNMENT * CAPACITY_ALIGNMENT);
+        this.spins = new int[Math.multiplyExact(rowCount, this.capacity)];
+        this.dots = new int[this.capacity];
+        this.losses = new int[this.capacity];
+        this.firstFailureRows = new int[this.capacity];
+        this.hits = new int[this.capacity];
+    }
+
+    /**
+     * Returns the vectorized evaluator when available, the scalar one
+     * otherwise.
+     */
+    public static SeriesBatchEvaluator create(CompiledSeries series, int retryCount, int capacity) {
+        if (Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true"))) {
+            try {
+                return (SeriesBatchEvaluator) Class.forName(VECTOR_EVALUATOR)
+                        .getConstructor(CompiledSeries.class, int.class, int.class)
+                        .newInstance(series, retryCount, capacity);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Not built, or the incubator module is not in the boot layer
+            }
+        }
+        return scalar(series, retryCount, capacity);
+    }
+
+    public static SeriesBatchEvaluator scalar(CompiledSeries series, int retryCount, int capacity) {
+        return new ScalarSeriesBatchEvaluator(series, retryCount, capacity);
+    }
+
+    public abstract boolean isVectorized();
+
+    /**
+     * Returns the most series of a batch, at least the requested capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Draws the numbers of the given count of series, series after series, as
+     * that many {@link SeriesPlayer#play(Roulette)} would.
+     */
+    public void draw(Roulette roulette, int count) {
+        checkCount(count);
+        for (int s = 0; s < count; s++) {
+            roulette.spin(spins, s * rowCount, (s + 1) * rowCount);
+        }
+    }
+
+    /**
+     * Sets the numbers drawn by a series.
+     */
+    public void setSpins(int series, int[] numbers, int offset) {
+        System.arraycopy(numbers, offset, spins, series * rowCount, rowCount);
+    }
+
+    /**
+     * Plays the first count series on their drawn numbers.
+     */
+    public void evaluate(int count) {
+        checkCount(count);
+        evaluateSeries(count);
+    }
+
+    protected abstract void evaluateSeries(int count);
+
+    private void checkCount(int count) {
+        if (count < 0 || count > capacity) {
+            throw new IllegalArgumentException("Batch of " + count + " series, capacity " + capacity);
+        }
+    }
+
+    public int getDots(int series) {
+        return dots[series];
+    }
+
+    public int getLosses(int series) {
+        return losses[series];
+    }
+
+    public int getProfit(int series, int betUnit) {
+        return betUnit * (dots[series] - SimulationEngine.COVERED_NUMBERS * losses[series]);
+    }
+
+    /**
+     * Returns the zero-based row of the first loss of the series, or -1.
+     */
+    public int getFirstFailureRow(int series) {
+        return firstFailureRows[series];
+    }
+
+    /**
+     * Returns how many rows of the series drew a losing number, as
+     * {@link SeriesPlayer#getHits()}.
+     */
+    public int getHits(int series) {
+        return hits[series];
+    }
+}
@@ -0,0 +1,94 @@
+package it.campione.roulette;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the text format of a series of excluded couples, as in "serie.txt":
+ * one row per line, either two numbers separated by a space or "ignora". Any
+ * line that is not a valid couple of roulette numbers is an "ignora" row.
+ * Files in the {@link BinaryFormat} are recognized and read as well.
+ *
+ * @author D. Campione
+ *
+ */
+public class SeriesFile {
+
+    private SeriesFile() {
+    }
+
+    public static List<Bet> parse(String text) {
+        SimulationMetrics.Timer timer = SimulationMetrics.getDefault().getParseTimer();
+        long start = timer.start();
+        List<Bet> bets = new ArrayList<>();
+        String[] lines = text.split("\\n");
+        for (String line : lines) {
+            bets.add(parseLine(line));
+        }
+        timer.stop(start);
+        return bets;
+    }
+
+    public static Bet parseLine(String line) {
+        String[] numbers = line.split(" ");
+        if (numbers.length == 2) {
+            try {
+                int bet1 = Integer.parseInt(numbers[0].trim());
+                int bet2 = Integer.parseInt(numbers[1].trim());
+                if ((bet1 >= 0 && bet1 <= 36) && (bet2 >= 0 && bet2 <= 36)) {
+                    return new Bet(bet1, bet2);
+                }
+            } catch (NumberFormatException e) {
+                // Ignore
+            }
+        }
+        return new Bet(-1, -1); // Ignore
+    }
+
+    public static List<Bet> read(Path path) throws IOException {
+        SimulationMetrics.Timer timer = SimulationMetrics.getDefault().getParseTimer();
+        long start = timer.start();
+        List<Bet> bets;
+        if (BinaryFormat.isBinary(path)) {
+            bets = BinaryFormat.readSeries(path);
+        } else {
+            bets = new ArrayList<>();
+            for (String line : Files.readAllLines(path)) {
+                bets.add(parseLine(line));
+            }
+        }
+        timer.stop(start);
+        return bets;
+    }
+
+    /**
+     * Writes the series in the text format. The rows are written to a
+     * temporary file next to the target, which then replaces it in a single
+     * move, so that a reader never sees a half-written series.
+     */
+    public static void write(Path path, List<Bet> bets) throws IOException {
+        Path target = path.toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary)) {
+                for (Bet bet : bets) {
+                    writer.write(bet.toString());
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
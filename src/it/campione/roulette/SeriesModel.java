@@ -0,0 +1,143 @@
+package it.campione.roulette;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed view of the series being edited, kept in sync with the text one edit
+ * at a time: {@link #replace(int, int, String)} re-parses only the lines
+ * touched by the edit, so the series is always ready to play without parsing
+ * the whole text again. The rows are those of {@link SeriesFile#parse(String)}
+ * on the same text; lines that are neither a valid couple, "ignora" nor blank
+ * are reported as invalid.
+ *
+ * @author D. Campione
+ *
+ */
+public class SeriesModel {
+
+    private final List<Line> lines = new ArrayList<>();
+    private int length;
+    private int invalidCount;
+
+    public SeriesModel(String text) {
+        for (String line : text.split("\n", -1)) {
+            add(lines.size(), new Line(line));
+        }
+        this.length = text.length();
+    }
+
+    /**
+     * Applies an edit of the text: the characters in [start, end) are
+     * replaced by the given text.
+     */
+    public void replace(int start, int end, String text) {
+        if (start < 0 || end < start || end > length) {
+            throw new IndexOutOfBoundsException("Edit [" + start + ", " + end + ") of " + length + " characters");
+        }
+        // Find the lines of the edit and the columns in them
+        int first = 0;
+        int firstStart = 0;
+        while (firstStart + lines.get(first).text.length() < start) {
+            firstStart += lines.get(first).text.length() + 1;
+            first++;
+        }
+        int last = first;
+        int lastStart = firstStart;
+        while (lastStart + lines.get(last).text.length() < end) {
+            lastStart += lines.get(last).text.length() + 1;
+            last++;
+        }
+
+        String edited = lines.get(first).text.substring(0, start - firstStart) + text
+                + lines.get(last).text.substring(end - lastStart);
+        for (int i = last; i >= first; i--) {
+            remove(i);
+        }
+        String[] editedLines = edited.split("\n", -1);
+        for (int i = 0; i < editedLines.length; i++) {
+            add(first + i, new Line(editedLines[i]));
+        }
+        length += text.length() - (end - start);
+    }
+
+    /**
+     * Returns the rows of the series, as {@link SeriesFile#parse(String)}
+     * would: the blank lines at the end are not rows, unless the text is a
+     * single line.
+     */
+    public List<Bet> getBets() {
+        int count = lines.size();
+        if (count > 1) {
+            while (count > 0 && lines.get(count - 1).text.isEmpty()) {
+                count--;
+            }
+        }
+        List<Bet> bets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            bets.add(lines.get(i).bet);
+        }
+        return Collections.unmodifiableList(bets);
+    }
+
+    /**
+     * Returns the length of the text.
+     */
+    public int length() {
+        return length;
+    }
+
+    public int getLineCount() {
+        return lines.size();
+    }
+
+    public boolean isValid(int line) {
+        return lines.get(line).valid;
+    }
+
+    public int getInvalidLineCount() {
+        return invalidCount;
+    }
+
+    /**
+     * Returns the zero-based numbers of the first invalid lines, at most the
+     * given count.
+     */
+    public List<Integer> getInvalidLines(int maxCount) {
+        List<Integer> invalid = new ArrayList<>();
+        for (int i = 0; i < lines.size() && invalid.size() < Math.min(maxCount, invalidCount); i++) {
+            if (!lines.get(i).valid) {
+                invalid.add(i);
+            }
+        }
+        return invalid;
+    }
+
+    private void add(int index, Line line) {
+        lines.add(index, line);
+        if (!line.valid) {
+            invalidCount++;
+        }
+    }
+
+    private void remove(int index) {
+        if (!lines.remove(index).valid) {
+            invalidCount--;
+        }
+    }
+
+    private static class Line {
+
+        private final String text;
+        private final Bet bet;
+        private final boolean valid;
+
+        Line(String text) {
+            this.text = text;
+            this.bet = SeriesFile.parseLine(text);
+            String trimmed = text.trim();
+            this.valid = !bet.shouldIgnore() || trimmed.isEmpty() || trimmed.equalsIgnoreCase("ignora");
+        }
+    }
+}
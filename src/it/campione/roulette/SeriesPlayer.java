@@ -0,0 +1,174 @@
+package it.campione.roulette;
+
+/**
+ * Plays a {@link CompiledSeries} over and over without allocating: the drawn
+ * numbers and the outcome codes of the last played series are kept in arrays
+ * owned by the player. A player must be used by a single thread.
+ *
+ * @author D. Campione
+ *
+ */
+public class SeriesPlayer {
+
+    public static final byte WIN = 0;
+    public static final byte LOSS = 1;
+    public static final byte IGNORED = 2;
+    /** A row that is not played because the retries are over; shown as a loss. */
+    public static final byte STOPPED = 3;
+
+    private final CompiledSeries series;
+    private final int retryCount;
+    private final int betUnit;
+    private final int[] spins;
+    private final byte[] outcomes;
+    private int dots;
+    private int losses;
+    private int firstFailureRow;
+    private int hits;
+
+    public SeriesPlayer(CompiledSeries series, int retryCount, int betUnit) {
+        this.series = series;
+        this.retryCount = retryCount;
+        this.betUnit = betUnit;
+        this.spins = new int[series.getRowCount()];
+        this.outcomes = new byte[series.getRowCount()];
+    }
+
+    /**
+     * Draws a number for every row of the series and plays it.
+     */
+    public void play(Roulette roulette) {
+        // Always pull out the number, also for the rows that are not played
+        roulette.spin(spins);
+        evaluate();
+    }
+
+    /**
+     * Plays the series on the given drawn numbers, one per row.
+     */
+    public void play(int[] numbers, int offset) {
+        System.arraycopy(numbers, offset, spins, 0, spins.length);
+        evaluate();
+    }
+
+    private void evaluate() {
+        int failuresCount = 0;
+        int wins = 0;
+        int firstFailure = -1;
+        int hitCount = 0;
+        for (int i = 0; i < spins.length; i++) {
+            long mask = series.getMask(i);
+            if (mask < 0) {
+                outcomes[i] = IGNORED;
+                continue;
+            }
+            int hit = (int) (mask >>> spins[i]) & 1;
+            hitCount += hit;
+            if (failuresCount > retryCount) {
+                outcomes[i] = STOPPED;
+            } else if (hit == 0) {
+                outcomes[i] = WIN;
+                wins++;
+            } else {
+                outcomes[i] = LOSS;
+                failuresCount++;
+                if (firstFailure == -1) {
+                    firstFailure = i;
+                }
+            }
+        }
+        dots = wins;
+        losses = failuresCount;
+        firstFailureRow = firstFailure;
+        hits = hitCount;
+    }
+
+    public CompiledSeries getSeries() {
+        return series;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public int getBetUnit() {
+        return betUnit;
+    }
+
+    public int getRowCount() {
+        return spins.length;
+    }
+
+    public int getDots() {
+        return dots;
+    }
+
+    public int getLosses() {
+        return losses;
+    }
+
+    public int getProfit() {
+        return betUnit * (dots - SimulationEngine.COVERED_NUMBERS * losses);
+    }
+
+    /**
+     * Returns the gain/loss of the rows of the last series that are within the
+     * attempt limit. The attempts are counted as in the result grid: row after
+     * row and, within a row, series after series.
+     *
+     * @param series       the zero-based index of the last series
+     * @param seriesCount  the number of series of the run
+     * @param attemptLimit the attempt up to which the gain/loss is summed
+     */
+    public int getLimitedProfit(long series, long seriesCount, int attemptLimit) {
+        int profit = 0;
+        for (int i = 0; i < outcomes.length && i * seriesCount + series < attemptLimit; i++) {
+            if (outcomes[i] == WIN) {
+                profit += betUnit;
+            } else if (outcomes[i] != IGNORED) {
+                profit -= betUnit * SimulationEngine.COVERED_NUMBERS;
+            }
+        }
+        return profit;
+    }
+
+    /**
+     * Returns how many rows of the last series drew a losing number, the
+     * stopped rows included; its mean is {@link CompiledSeries#getExpectedHits()}
+     * on a fair wheel.
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the zero-based row of the first loss of the last series, or -1.
+     */
+    public int getFirstFailureRow() {
+        return firstFailureRow;
+    }
+
+    public int getSpin(int row) {
+        return spins[row];
+    }
+
+    public byte getOutcome(int row) {
+        return outcomes[row];
+    }
+
+    /**
+     * Returns the character shown in the result grid for an outcome code.
+     */
+    public static char toChar(byte outcome) {
+        switch (outcome) {
+        case WIN:
+            return SimulationEngine.WIN;
+        case IGNORED:
+            return SimulationEngine.IGNORED;
+        case LOSS:
+        case STOPPED:
+        default:
+            return SimulationEngine.LOSS;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package it.campione.roulette;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Aggregated statistics over many played series, kept in constant memory
+ * whatever the number of series. Instances are filled by a single thread
+ * through {@link #addSeries} and combined with {@link #merge}, so that every
+ * worker of a parallel run can keep its own statistics. The series must be
+ * added, and the statistics merged, in series order, as the drawdown depends
+ * on the order of the series.
+ * <p>
+ * The confidence intervals of the mean gain/loss and points come from the
+ * samples given to {@link #addSample}: a sample is a series, or a group of
+ * series whose numbers were drawn together (see {@link VarianceReduction}),
+ * and carries the rows that drew a losing number as control variate.
+ *
+ * @author D. Campione
+ *
+ */
+public class SeriesStatistics {
+
+    private final int rowCount;
+    private final int retryCount;
+    private long seriesCount;
+    private long totalDots;
+    private long totalProfitLoss;
+    private long seriesWithFailures;
+    private long stoppedSeries;
+    private long limitedProfitLoss;
+    private long peakProfitLoss;
+    private long troughProfitLoss;
+    private long maxDrawdown;
+    private int minProfit = Integer.MAX_VALUE;
+    private int maxProfit = Integer.MIN_VALUE;
+    private double mean;
+    private double m2;
+    private int firstFailureRow = -1;
+    private long firstFailureSeries = -1;
+    private final long[] firstFailureHistogram;
+    private final long[] outcomeHistogram;
+    private final MeanEstimate profitEstimate = new MeanEstimate();
+    private final MeanEstimate dotsEstimate = new MeanEstimate();
+
+    public SeriesStatistics(int rowCount, int retryCount) {
+        this.rowCount = rowCount;
+        this.retryCount = retryCount;
+        this.firstFailureHistogram = new long[rowCount];
+        this.outcomeHistogram = new long[(retryCount + 2) * (rowCount + 1)];
+    }
+
+    /**
+     * Records a played series.
+     *
+     * @param series          the zero-based index of the series
+     * @param profit          the gain/loss of the series
+     * @param dots            the won rows of the series
+     * @param losses          the lost rows of the series
+     * @param firstFailureRow the zero-based row of the first loss, or -1
+     */
+    public void addSeries(long series, int profit, int dots, int losses, int firstFailureRow) {
+        addSeries(series, profit, dots, losses, firstFailureRow, 0);
+    }
+
+    /**
+     * Records a played series.
+     *
+     * @param series          the zero-based index of the series
+     * @param profit          the gain/loss of the series
+     * @param dots            the won rows of the series
+     * @param losses          the lost rows of the series
+     * @param firstFailureRow the zero-based row of the first loss, or -1
+     * @param limitedProfit   the gain/loss of the rows of the series within the
+     *                        attempt limit
+     */
+    public void addSeries(long series, int profit, int dots, int losses, int firstFailureRow, int limitedProfit) {
+        seriesCount++;
+        totalDots += dots;
+        totalProfitLoss += profit;
+        limitedProfitLoss += limitedProfit;
+        if (totalProfitLoss > peakProfitLoss) {
+            peakProfitLoss = totalProfitLoss;
+        }
+        if (totalProfitLoss < troughProfitLoss) {
+            troughProfitLoss = totalProfitLoss;
+        }
+        if (peakProfitLoss - totalProfitLoss > maxDrawdown) {
+            maxDrawdown = peakProfitLoss - totalProfitLoss;
+        }
+        outcomeHistogram[Math.min(losses, retryCount + 1) * (rowCount + 1) + dots]++;
+        if (profit < minProfit) {
+            minProfit = profit;
+        }
+        if (profit > maxProfit) {
+            maxProfit = profit;
+        }
+
+        // Welford's online update of mean and variance
+        double delta = profit - mean;
+        mean += delta / seriesCount;
+        m2 += delta * (profit - mean);
+
+        if (firstFailureRow != -1) {
+            seriesWithFailures++;
+            firstFailureHistogram[firstFailureRow]++;
+            if (this.firstFailureRow == -1 || firstFailureRow < this.firstFailureRow
+                    || (firstFailureRow == this.firstFailureRow && series < firstFailureSeries)) {
+                this.firstFailureRow = firstFailureRow;
+                this.firstFailureSeries = series;
+            }
+        }
+        if (losses > retryCount) {
+            stoppedSeries++;
+        }
+    }
+
+    /**
+     * Records an independent sample of the mean gain/loss and points of a
+     * series, for the confidence intervals.
+     *
+     * @param profit  the mean gain/loss of the series of the sample
+     * @param dots    the mean won rows of the series of the sample
+     * @param control the mean rows of the series of the sample that drew a
+     *                losing number, minus its expected value (0 when it is
+     *                not known)
+     */
+    public void addSample(double profit, double dots, double control) {
+        profitEstimate.add(profit, control);
+        dotsEstimate.add(dots, control);
+    }
+
+    /**
+     * Adds the statistics of another set of series, played with the same bets
+     * and retry count right after the series of this one.
+     */
+    public void merge(SeriesStatistics other) {
+        if (other.rowCount != rowCount || other.retryCount != retryCount) {
+            throw new IllegalArgumentException("Statistics of different series cannot be merged");
+        }
+        if (other.seriesCount == 0) {
+            return;
+        }
+        profitEstimate.merge(other.profitEstimate);
+        dotsEstimate.merge(other.dotsEstimate);
+        long count = seriesCount + other.seriesCount;
+
+        // Chan's parallel combination of mean and variance
+        double delta = other.mean - mean;
+        mean += delta * other.seriesCount / count;
+        m2 += other.m2 + delta * delta * ((double) seriesCount * other.seriesCount / count);
+
+        // The series of the other statistics follow the ones of this
+        maxDrawdown = Math.max(Math.max(maxDrawdown, other.maxDrawdown),
+                peakProfitLoss - (totalProfitLoss + other.troughProfitLoss));
+        peakProfitLoss = Math.max(peakProfitLoss, totalProfitLoss + other.peakProfitLoss);
+        troughProfitLoss = Math.min(troughProfitLoss, totalProfitLoss + other.troughProfitLoss);
+
+        seriesCount = count;
+        totalDots += other.totalDots;
+        totalProfitLoss += other.totalProfitLoss;
+        limitedProfitLoss += other.limitedProfitLoss;
+        seriesWithFailures += other.seriesWithFailures;
+        stoppedSeries += other.stoppedSeries;
+        minProfit = Math.min(minProfit, other.minProfit);
+        maxProfit = Math.max(maxProfit, other.maxProfit);
+        for (int i = 0; i < rowCount; i++) {
+            firstFailureHistogram[i] += other.firstFailureHistogram[i];
+        }
+        for (int i = 0; i < outcomeHistogram.length; i++) {
+            outcomeHistogram[i] += other.outcomeHistogram[i];
+        }
+        if (other.firstFailureRow != -1 && (firstFailureRow == -1 || other.firstFailureRow < firstFailureRow
+                || (other.firstFailureRow == firstFailureRow && other.firstFailureSeries < firstFailureSeries))) {
+            firstFailureRow = other.firstFailureRow;
+            firstFailureSeries = other.firstFailureSeries;
+        }
+    }
+
+    /**
+     * Writes the whole state, for a {@link Checkpoint}.
+     */
+    void writeState(DataOutput out) throws IOException {
+        out.writeInt(rowCount);
+        out.writeInt(retryCount);
+        out.writeLong(seriesCount);
+        out.writeLong(totalDots);
+        out.writeLong(totalProfitLoss);
+        out.writeLong(seriesWithFailures);
+        out.writeLong(stoppedSeries);
+        out.writeLong(limitedProfitLoss);
+        out.writeLong(peakProfitLoss);
+        out.writeLong(troughProfitLoss);
+        out.writeLong(maxDrawdown);
+        out.writeInt(minProfit);
+        out.writeInt(maxProfit);
+        out.writeDouble(mean);
+        out.writeDouble(m2);
+        out.writeInt(firstFailureRow);
+        out.writeLong(firstFailureSeries);
+        for (long count : firstFailureHistogram) {
+            out.writeLong(count);
+        }
+        for (long count : outcomeHistogram) {
+            out.writeLong(count);
+        }
+        profitEstimate.writeState(out);
+        dotsEstimate.writeState(out);
+    }
+
+    /**
+     * Replaces the state with the one written by {@link #writeState}, bit for
+     * bit.
+     */
+    void readState(DataInput in) throws IOException {
+        if (in.readInt() != rowCount || in.readInt() != retryCount) {
+            throw new IOException("Statistics of different series");
+        }
+        seriesCount = in.readLong();
+        totalDots = in.readLong();
+        totalProfitLoss = in.readLong();
+        seriesWithFailures = in.readLong();
+        stoppedSeries = in.readLong();
+        limitedProfitLoss = in.readLong();
+        peakProfitLoss = in.readLong();
+        troughProfitLoss = in.readLong();
+        maxDrawdown = in.readLong();
+        minProfit = in.readInt();
+        maxProfit = in.readInt();
+        mean = in.readDouble();
+        m2 = in.readDouble();
+        firstFailureRow = in.readInt();
+        firstFailureSeries = in.readLong();
+        for (int i = 0; i < firstFailureHistogram.length; i++) {
+            firstFailureHistogram[i] = in.readLong();
+        }
+        for (int i = 0; i < outcomeHistogram.length; i++) {
+            outcomeHistogram[i] = in.readLong();
+        }
+        profitEstimate.readState(in);
+        dotsEstimate.readState(in);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public long getSeriesCount() {
+        return seriesCount;
+    }
+
+    public long getTotalDots() {
+        return totalDots;
+    }
+
+    public double getAverageDots() {
+        return seriesCount > 0 ? (double) totalDots / seriesCount : 0;
+    }
+
+    public long getTotalProfitLoss() {
+        return totalProfitLoss;
+    }
+
+    /**
+     * Returns the gain/loss up to the attempt limit. If that is less than the
+     * total gain/loss and the total is strictly negative, the total is
+     * returned.
+     */
+    public long getLimitedProfitLoss() {
+        if (limitedProfitLoss < totalProfitLoss && totalProfitLoss < 0) {
+            return totalProfitLoss;
+        }
+        return limitedProfitLoss;
+    }
+
+    /**
+     * Returns the highest running gain/loss reached, series after series (at
+     * least 0, the starting point).
+     */
+    public long getPeakProfitLoss() {
+        return peakProfitLoss;
+    }
+
+    /**
+     * Returns the lowest running gain/loss reached, series after series (at
+     * most 0, the starting point).
+     */
+    public long getTroughProfitLoss() {
+        return troughProfitLoss;
+    }
+
+    /**
+     * Returns the largest fall of the running gain/loss from a previous peak.
+     */
+    public long getMaxDrawdown() {
+        return maxDrawdown;
+    }
+
+    public double getMeanProfit() {
+        return seriesCount > 0 ? (double) totalProfitLoss / seriesCount : 0;
+    }
+
+    /**
+     * Returns the sample variance of the gain/loss of a series.
+     */
+    public double getProfitVariance() {
+        return seriesCount > 1 ? m2 / (seriesCount - 1) : 0;
+    }
+
+    public double getProfitStandardDeviation() {
+        return Math.sqrt(getProfitVariance());
+    }
+
+    public int getMinProfit() {
+        return seriesCount > 0 ? minProfit : 0;
+    }
+
+    public int getMaxProfit() {
+        return seriesCount > 0 ? maxProfit : 0;
+    }
+
+    /**
+     * Returns the estimate of the mean gain/loss of a series from the samples.
+     */
+    public MeanEstimate getProfitEstimate() {
+        return profitEstimate;
+    }
+
+    /**
+     * Returns the estimate of the mean points of a series from the samples.
+     */
+    public MeanEstimate getDotsEstimate() {
+        return dotsEstimate;
+    }
+
+    public long getSeriesWithFailures() {
+        return seriesWithFailures;
+    }
+
+    /**
+     * Returns how many series used up all their retries, i.e. were stopped.
+     */
+    public long getStoppedSeries() {
+        return stoppedSeries;
+    }
+
+    public boolean hasFailures() {
+        return firstFailureRow != -1;
+    }
+
+    public int getFirstFailureRow() {
+        return firstFailureRow;
+    }
+
+    public long getFirstFailureSeries() {
+        return firstFailureSeries;
+    }
+
+    /**
+     * Returns how many series had their first loss on the given row.
+     */
+    public long getFirstFailureCount(int row) {
+        return firstFailureHistogram[row];
+    }
+
+    public long[] getFirstFailureHistogram() {
+        return Arrays.copyOf(firstFailureHistogram, rowCount);
+    }
+
+    /**
+     * Returns how many series ended with the given losses and won rows; a
+     * series gains betUnit * (dots - 35 * losses).
+     */
+    public long getOutcomeCount(int losses, int dots) {
+        if (losses < 0 || losses > retryCount + 1 || dots < 0 || dots > rowCount) {
+            return 0;
+        }
+        return outcomeHistogram[losses * (rowCount + 1) + dots];
+    }
+
+    /**
+     * Returns how many series ended with the given losses.
+     */
+    public long getLossesCount(int losses) {
+        long count = 0;
+        for (int dots = 0; dots <= rowCount; dots++) {
+            count += getOutcomeCount(losses, dots);
+        }
+        return count;
+    }
+}
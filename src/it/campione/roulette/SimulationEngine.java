@@ -0,0 +1,177 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Headless engine of the "Cover the Table" extraction method. It plays the
+ * given series of excluded couples for the requested number of series and
+ * collects the outcomes in a {@link SimulationResult}, without depending on the
+ * JavaFX toolkit. With a {@link JournalWriter}, every series played is also
+ * recorded in the journal; the journal is best effort, a run goes on without
+ * it once it cannot be written, see {@link #getJournalFailure()}.
+ *
+ * @author D. Campione
+ *
+ */
+public class SimulationEngine {
+
+    public static final char WIN = '.';
+    public static final char LOSS = 'X';
+    public static final char IGNORED = '=';
+
+    /** Number of roulette numbers covered by the bet amount. */
+    public static final int COVERED_NUMBERS = 35;
+
+    /** Default maximum number of series whose details are kept. */
+    public static final int DEFAULT_DETAIL_LIMIT = 1000;
+
+    private final Roulette roulette;
+    private int detailLimit = DEFAULT_DETAIL_LIMIT;
+    private JournalWriter journal;
+    private IOException journalFailure;
+
+    public SimulationEngine() {
+        this(new Roulette());
+    }
+
+    public SimulationEngine(Roulette roulette) {
+        this.roulette = roulette;
+    }
+
+    public int getDetailLimit() {
+        return detailLimit;
+    }
+
+    /**
+     * Sets the maximum number of series of a run whose details (grid of the
+     * outcomes, drawn numbers, gain/loss of each series) are kept in the result.
+     * Larger runs keep only the aggregated statistics, in constant memory.
+     */
+    public void setDetailLimit(int detailLimit) {
+        this.detailLimit = detailLimit;
+    }
+
+    public JournalWriter getJournal() {
+        return journal;
+    }
+
+    /**
+     * Sets the journal that records the runs, null for none; the journal is
+     * not closed by the engine.
+     */
+    public void setJournal(JournalWriter journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the error that stopped the journal of the last run, null if the
+     * journal recorded all of it or there was no journal.
+     */
+    public IOException getJournalFailure() {
+        return journalFailure;
+    }
+
+    /**
+     * Runs the extraction.
+     *
+     * @param bets         the rows of excluded couples ("ignora" rows included)
+     * @param retryCount   how many losses are retried before the game stops
+     * @param seriesCount  how many times the whole series is played
+     * @param betUnit      the amount bet on every covered number
+     * @param attemptLimit the attempt up to which the gain/loss is summed (0 = no
+     *                     limit)
+     * @return the outcome of the extraction
+     */
+    public SimulationResult run(List<Bet> bets, int retryCount, long seriesCount, int betUnit, int attemptLimit) {
+        return run(bets, retryCount, seriesCount, betUnit, attemptLimit, SimulationMonitor.NONE);
+    }
+
+    /**
+     * Runs the extraction, reporting the progress to the monitor after every
+     * series.
+     *
+     * @throws CancellationException if the monitor cancels the extraction
+     */
+    public SimulationResult run(List<Bet> bets, int retryCount, long seriesCount, int betUnit, int attemptLimit,
+            SimulationMonitor monitor) {
+        if (retryCount < 0 || seriesCount < 0 || betUnit < 0 || attemptLimit < 0) {
+            throw new IllegalArgumentException("Negative simulation parameter");
+        }
+        SimulationMetrics metrics = SimulationMetrics.getDefault();
+        long start = metrics.getSimulationTimer().start();
+        long allocated = SimulationMetrics.threadAllocatedBytes();
+        List<Bet> runtimeBets = new ArrayList<>(bets);
+        int rowCount = runtimeBets.size();
+        SeriesPlayer player = new SeriesPlayer(CompiledSeries.compile(runtimeBets), retryCount, betUnit);
+        SeriesStatistics statistics = new SeriesStatistics(rowCount, retryCount);
+        double expectedHits = player.getSeries().getExpectedHits();
+
+        boolean details = seriesCount <= detailLimit;
+        int detailCount = details ? (int) seriesCount : 0;
+        char[][] results = new char[details ? rowCount : 0][detailCount];
+        int[] extractedNumbers = new int[Math.multiplyExact(details ? rowCount : 0, detailCount)];
+        int[] seriesProfits = new int[detailCount];
+        journalFailure = null;
+        journalRun(runtimeBets, retryCount, betUnit, attemptLimit, seriesCount);
+
+        for (long series = 0; series < seriesCount; series++) {
+            player.play(roulette);
+            journalSeries(series, player);
+            int profit = player.getProfit();
+            int limitedProfit = attemptLimit != 0 ? player.getLimitedProfit(series, seriesCount, attemptLimit) : 0;
+            statistics.addSeries(series, profit, player.getDots(), player.getLosses(), player.getFirstFailureRow(),
+                    limitedProfit);
+            statistics.addSample(profit, player.getDots(), player.getHits() - expectedHits);
+
+            if (details) {
+                int column = (int) series;
+                for (int i = 0; i < rowCount; i++) {
+                    extractedNumbers[column * rowCount + i] = player.getSpin(i);
+                    results[i][column] = SeriesPlayer.toChar(player.getOutcome(i));
+                }
+                seriesProfits[column] = profit;
+            }
+
+            if (monitor.isCancelled()) {
+                throw new CancellationException("Extraction cancelled");
+            }
+            monitor.seriesCompleted(series + 1, seriesCount, statistics.getTotalProfitLoss());
+        }
+
+        String[] rowOutcomes = null;
+        if (details) {
+            rowOutcomes = new String[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                rowOutcomes[i] = new String(results[i]);
+            }
+        }
+        metrics.allocatedSince(allocated, seriesCount);
+        metrics.getSimulationTimer().stop(start);
+        metrics.seriesPlayed(seriesCount, seriesCount * rowCount);
+        return new SimulationResult(runtimeBets, betUnit, attemptLimit, statistics, rowOutcomes,
+                details ? extractedNumbers : null, details ? seriesProfits : null);
+    }
+
+    private void journalRun(List<Bet> bets, int retryCount, int betUnit, int attemptLimit, long seriesCount) {
+        if (journal != null) {
+            try {
+                journal.startRun(bets, retryCount, betUnit, attemptLimit, seriesCount);
+            } catch (IOException e) {
+                journalFailure = e;
+            }
+        }
+    }
+
+    private void journalSeries(long series, SeriesPlayer player) {
+        if (journal != null && journalFailure == null) {
+            try {
+                journal.appendSeries(series, player);
+            } catch (IOException e) {
+                journalFailure = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package it.campione.roulette;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timers of the simulation pipeline: parsing of the series,
+ * simulation, report building and rendering of the result, with the
+ * throughput in series and spins per second, the memory allocated per series
+ * and the hits of the {@link ResultCache}. The metrics of the process are
+ * collected in {@link #getDefault()}, which can be published over JMX with
+ * {@link #register()} and dumped as text with {@link #dump()}.
+ *
+ * @author D. Campione
+ *
+ */
+public class SimulationMetrics implements SimulationMetricsMXBean {
+
+    public static final String OBJECT_NAME = "it.campione.roulette:type=SimulationMetrics";
+
+    private static final SimulationMetrics DEFAULT = new SimulationMetrics();
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final Timer parse = new Timer();
+    private final Timer simulation = new Timer();
+    private final Timer report = new Timer();
+    private final Timer render = new Timer();
+    private final LongAdder series = new LongAdder();
+    private final LongAdder spins = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder allocationSeries = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    public static SimulationMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Publishes the metrics on the platform MBean server, unless they are
+     * already there.
+     */
+    public synchronized void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(this, name);
+        }
+    }
+
+    public Timer getParseTimer() {
+        return parse;
+    }
+
+    public Timer getSimulationTimer() {
+        return simulation;
+    }
+
+    public Timer getReportTimer() {
+        return report;
+    }
+
+    public Timer getRenderTimer() {
+        return render;
+    }
+
+    /**
+     * Records the series and spins played by a completed run.
+     */
+    public void seriesPlayed(long playedSeries, long playedSpins) {
+        series.add(playedSeries);
+        spins.add(playedSpins);
+    }
+
+    /**
+     * Records the memory allocated by the current thread to play the given
+     * series, since it had allocated the given bytes.
+     *
+     * @param startBytes the {@link #threadAllocatedBytes()} before the series
+     */
+    public void allocatedSince(long startBytes, long allocatingSeries) {
+        if (startBytes >= 0) {
+            allocatedBytes.add(threadAllocatedBytes() - startBytes);
+            allocationSeries.add(allocatingSeries);
+        }
+    }
+
+    public void cacheHit() {
+        cacheHits.increment();
+    }
+
+    public void cacheMiss() {
+        cacheMisses.increment();
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or -1 when the
+     * JVM does not measure them.
+     */
+    public static long threadAllocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    @Override
+    public long getRuns() {
+        return simulation.getCount();
+    }
+
+    @Override
+    public long getSeries() {
+        return series.sum();
+    }
+
+    @Override
+    public long getSpins() {
+        return spins.sum();
+    }
+
+    @Override
+    public double getSeriesPerSecond() {
+        return perSecond(series.sum());
+    }
+
+    @Override
+    public double getSpinsPerSecond() {
+        return perSecond(spins.sum());
+    }
+
+    private double perSecond(long count) {
+        long nanos = simulation.getTotalNanos();
+        return nanos > 0 ? count * 1e9 / nanos : 0;
+    }
+
+    @Override
+    public double getAllocatedBytesPerSeries() {
+        long count = allocationSeries.sum();
+        return count > 0 ? (double) allocatedBytes.sum() / count : 0;
+    }
+
+    @Override
+    public double getAverageParseMillis() {
+        return parse.getAverageMillis();
+    }
+
+    @Override
+    public double getAverageSimulationMillis() {
+        return simulation.getAverageMillis();
+    }
+
+    @Override
+    public double getMaxSimulationMillis() {
+        return simulation.getMaxMillis();
+    }
+
+    @Override
+    public double getAverageReportMillis() {
+        return report.getAverageMillis();
+    }
+
+    @Override
+    public double getAverageRenderMillis() {
+        return render.getAverageMillis();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("runs: %d%n", getRuns()));
+        text.append(String.format("series: %d (%.0f/s)%n", getSeries(), getSeriesPerSecond()));
+        text.append(String.format("spins: %d (%.0f/s)%n", getSpins(), getSpinsPerSecond()));
+        text.append(String.format("allocated bytes per series: %.1f%n", getAllocatedBytesPerSeries()));
+        text.append("parse: ").append(parse).append(String.format("%n"));
+        text.append("simulation: ").append(simulation).append(String.format("%n"));
+        text.append("report: ").append(report).append(String.format("%n"));
+        text.append("render: ").append(render).append(String.format("%n"));
+        text.append(String.format("cache: %d hits, %d misses%n", getCacheHits(), getCacheMisses()));
+        return text.toString();
+    }
+
+    @Override
+    public void reset() {
+        parse.reset();
+        simulation.reset();
+        report.reset();
+        render.reset();
+        series.reset();
+        spins.reset();
+        allocatedBytes.reset();
+        allocationSeries.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+                    .getThreadMXBean();
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Count, total and maximum duration of a step.
+     */
+    public static class Timer {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        /**
+         * Returns the start time to pass to {@link #stop(long)}.
+         */
+        public long start() {
+            return System.nanoTime();
+        }
+
+        public void stop(long start) {
+            record(System.nanoTime() - start);
+        }
+
+        public void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public double getAverageMillis() {
+            long n = count.sum();
+            return n > 0 ? totalNanos.sum() / 1e6 / n : 0;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos.get() / 1e6;
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d times, average %.3f ms, max %.3f ms", getCount(), getAverageMillis(),
+                    getMaxMillis());
+        }
+    }
+}
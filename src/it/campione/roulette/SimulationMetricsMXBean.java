@@ -0,0 +1,43 @@
+package it.campione.roulette;
+
+/**
+ * JMX view of the {@link SimulationMetrics}.
+ *
+ * @author D. Campione
+ *
+ */
+public interface SimulationMetricsMXBean {
+
+    long getRuns();
+
+    long getSeries();
+
+    long getSpins();
+
+    double getSeriesPerSecond();
+
+    double getSpinsPerSecond();
+
+    double getAllocatedBytesPerSeries();
+
+    double getAverageParseMillis();
+
+    double getAverageSimulationMillis();
+
+    double getMaxSimulationMillis();
+
+    double getAverageReportMillis();
+
+    double getAverageRenderMillis();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    /**
+     * Returns all the metrics as text.
+     */
+    String dump();
+
+    void reset();
+}
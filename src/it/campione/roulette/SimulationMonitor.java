@@ -0,0 +1,33 @@
+package it.campione.roulette;
+
+/**
+ * Receives the progress of a running simulation and can ask the simulation to
+ * stop. A monitor given to the {@link ParallelSimulationEngine} is called from
+ * several worker threads at once.
+ *
+ * @author D. Campione
+ *
+ */
+public interface SimulationMonitor {
+
+    /** Monitor that ignores the progress and never cancels. */
+    SimulationMonitor NONE = (completedSeries, totalSeries, totalProfitLoss) -> {
+    };
+
+    /**
+     * Called after some series have been played.
+     *
+     * @param completedSeries the series played so far
+     * @param totalSeries     the series requested
+     * @param totalProfitLoss the gain/loss of the series played so far
+     */
+    void seriesCompleted(long completedSeries, long totalSeries, long totalProfitLoss);
+
+    /**
+     * Returns true to stop the simulation, which then throws a
+     * {@link java.util.concurrent.CancellationException}.
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+}
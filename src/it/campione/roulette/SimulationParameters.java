@@ -0,0 +1,76 @@
+package it.campione.roulette;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable set of the parameters of a simulation run: the series of excluded
+ * couples and the values chosen in the combo boxes of the application, plus
+ * the seed of the random numbers.
+ *
+ * @author D. Campione
+ *
+ */
+public class SimulationParameters {
+
+    private final List<Bet> bets;
+    private final int retryCount;
+    private final long seriesCount;
+    private final int betUnit;
+    private final int attemptLimit;
+    private final long seed;
+
+    /**
+     * @param bets         the rows of excluded couples ("ignora" rows included)
+     * @param retryCount   how many losses are retried before the game stops
+     * @param seriesCount  how many times the whole series is played
+     * @param betUnit      the amount bet on every covered number
+     * @param attemptLimit the attempt up to which the gain/loss is summed (0 = no
+     *                     limit)
+     * @param seed         the seed of the random numbers
+     */
+    public SimulationParameters(List<Bet> bets, int retryCount, long seriesCount, int betUnit, int attemptLimit,
+            long seed) {
+        if (retryCount < 0 || seriesCount < 0 || betUnit < 0 || attemptLimit < 0) {
+            throw new IllegalArgumentException("Negative simulation parameter");
+        }
+        this.bets = Collections.unmodifiableList(new ArrayList<>(bets));
+        this.retryCount = retryCount;
+        this.seriesCount = seriesCount;
+        this.betUnit = betUnit;
+        this.attemptLimit = attemptLimit;
+        this.seed = seed;
+    }
+
+    public List<Bet> getBets() {
+        return bets;
+    }
+
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    public long getSeriesCount() {
+        return seriesCount;
+    }
+
+    public int getBetUnit() {
+        return betUnit;
+    }
+
+    /**
+     * Returns the bet amount on the table, i.e. the bet unit on 35 numbers.
+     */
+    public int getBetAmount() {
+        return betUnit * SimulationEngine.COVERED_NUMBERS;
+    }
+
+    public int getAttemptLimit() {
+        return attemptLimit;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+}
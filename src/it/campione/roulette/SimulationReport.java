@@ -0,0 +1,197 @@
+package it.campione.roulette;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Builds the localized textual report of a {@link SimulationResult}, as shown
+ * in the result area of the application. When the details of the run were not
+ * kept, the grid and the gain/loss of each series are replaced by a summary of
+ * their distribution. The report is also available line by line, formatted
+ * on demand.
+ *
+ * @author D. Campione
+ *
+ */
+public class SimulationReport {
+
+    private SimulationReport() {
+    }
+
+    public static String format(SimulationResult result) {
+        SimulationMetrics.Timer timer = SimulationMetrics.getDefault().getReportTimer();
+        long start = timer.start();
+        String report = formatReport(result);
+        timer.stop(start);
+        return report;
+    }
+
+    private static String formatReport(SimulationResult result) {
+        return String.join("\n", lines(result));
+    }
+
+    /**
+     * Returns the lines of the report, formatted only when they are read, so
+     * that a view can show a report of any length by formatting just the
+     * visible lines.
+     */
+    public static List<String> lines(SimulationResult result) {
+        return new Lines(result);
+    }
+
+    /**
+     * The report as a list of lines: the rows of the series, the points (with
+     * the confidence intervals of the means, from two series on) and the first
+     * failure, the gain/loss of each series (or their summary) and
+     * the totals.
+     */
+    private static class Lines extends AbstractList<String> implements RandomAccess {
+
+        private static final int SUMMARY_LINES = 7;
+
+        private final SimulationResult result;
+        private final int rowCount;
+        private final int headerLines;
+        private final int seriesLines;
+        private final int size;
+
+        Lines(SimulationResult result) {
+            this.result = result;
+            this.rowCount = result.getRowCount();
+            this.headerLines = result.getStatistics().getProfitEstimate().getCount() > 1 ? 7 : 5;
+            this.seriesLines = result.hasDetails() ? (int) result.getSeriesCount() : SUMMARY_LINES;
+            this.size = rowCount + headerLines + seriesLines + 2 + (result.getAttemptLimit() != 0 ? 1 : 0);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Line " + index + " of " + size);
+            }
+            if (index < rowCount) {
+                return rowLine(index);
+            }
+            index -= rowCount;
+            if (index < headerLines) {
+                return headerLine(index);
+            }
+            index -= headerLines;
+            if (index < seriesLines) {
+                return result.hasDetails() ? seriesLine(index) : summaryLine(index);
+            }
+            index -= seriesLines;
+            switch (index) {
+            case 0:
+                return "";
+            case 1:
+                return Messages.getString("totalSum") + ": " + result.getTotalProfitLoss() + Messages.getString("euro");
+            default:
+                return Messages.getString("gainLossUpToAttempt") + " " + result.getAttemptLimit() + ": "
+                        + result.getLimitedProfitLoss() + Messages.getString("euro");
+            }
+        }
+
+        private String rowLine(int row) {
+            StringBuilder line = new StringBuilder();
+            if (result.hasDetails()) {
+                line.append(result.getRowOutcomes(row)).append(" ");
+            }
+            line.append(result.getBets().get(row));
+            if (result.getSeriesCount() == 1 && row < result.getExtractedNumberCount()) {
+                int extractedNumber = result.getExtractedNumber(row);
+                line.append(", " + Messages.getString("numberDrawn") + ": ").append(extractedNumber).append(" (")
+                        .append(getNumberCharacteristics(extractedNumber)).append(")");
+            }
+            return line.toString();
+        }
+
+        private String headerLine(int index) {
+            if (headerLines > 5) {
+                SeriesStatistics statistics = result.getStatistics();
+                if (index == 2) {
+                    return confidenceLine(Messages.getString("averagePoints"), statistics.getDotsEstimate(), "");
+                }
+                if (index == 3) {
+                    return confidenceLine(Messages.getString("meanGainLoss"), statistics.getProfitEstimate(),
+                            Messages.getString("euro"));
+                }
+                if (index > 3) {
+                    index -= 2;
+                }
+            }
+            switch (index) {
+            case 1:
+                return Messages.getString("averagePoints") + ": " + result.getAverageDots();
+            case 2:
+                if (result.hasFailures()) {
+                    return Messages.getString("theFirstFailureIsRecordedAfter") + " "
+                            + (result.getFirstFailureRow() + 1) + " " + Messages.getString("attemptsInTheSeries")
+                            + " " + (result.getFirstFailureSeries() + 1) + ".";
+                }
+                return Messages.getString("thereWereNoFailuresInTheSeries");
+            case 4:
+                return "**" + Messages.getString("gainLossForEachSeries") + "**";
+            default:
+                return "";
+            }
+        }
+
+        private String confidenceLine(String label, MeanEstimate estimate, String unit) {
+            return label + ", " + Messages.getString("confidenceInterval95") + ": "
+                    + String.format("%.4f \u00b1 %.4f", estimate.getMean(), estimate.getHalfWidth()) + unit + "; "
+                    + Messages.getString("withControlVariate") + ": "
+                    + String.format("%.4f \u00b1 %.4f", estimate.getControlledMean(),
+                            estimate.getControlledHalfWidth())
+                    + unit;
+        }
+
+        private String seriesLine(int series) {
+            return Messages.getString("series") + " " + (series + 1) + ": " + result.getSeriesProfit(series)
+                    + Messages.getString("euro");
+        }
+
+        private String summaryLine(int index) {
+            SeriesStatistics statistics = result.getStatistics();
+            String euro = Messages.getString("euro");
+            switch (index) {
+            case 0:
+                return Messages.getString("series") + ": " + statistics.getSeriesCount();
+            case 1:
+                return Messages.getString("meanGainLoss") + ": " + statistics.getMeanProfit() + euro;
+            case 2:
+                return Messages.getString("standardDeviation") + ": " + statistics.getProfitStandardDeviation() + euro;
+            case 3:
+                return Messages.getString("minGainLoss") + ": " + statistics.getMinProfit() + euro;
+            case 4:
+                return Messages.getString("maxGainLoss") + ": " + statistics.getMaxProfit() + euro;
+            case 5:
+                return Messages.getString("stoppedSeries") + ": " + statistics.getStoppedSeries();
+            default:
+                return Messages.getString("maxDrawdown") + ": " + statistics.getMaxDrawdown() + euro;
+            }
+        }
+    }
+
+    public static String getNumberCharacteristics(int number) {
+        String color;
+        if (number == 0) {
+            color = Messages.getString("green");
+        } else if ((number >= 1 && number <= 10) || (number >= 19 && number <= 28)) {
+            color = (number % 2 == 0) ? Messages.getString("black") : Messages.getString("red");
+        } else {
+            color = (number % 2 == 0) ? Messages.getString("red") : Messages.getString("black");
+        }
+
+        String parity = (number % 2 == 0) ? Messages.getString("even") : Messages.getString("odd");
+        String range = (number >= 1 && number <= 18) ? Messages.getString("low")
+                : (number >= 19 && number <= 36) ? Messages.getString("high") : "";
+
+        return color + ", " + parity + ", " + range;
+    }
+}
@@ -0,0 +1,162 @@
+package it.campione.roulette;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a "Cover the Table" simulation run. The aggregated figures shown
+ * in the result area of the application are always available, through the
+ * {@link SeriesStatistics} of the run. The details, that is the grid of the row
+ * outcomes (one character per series), the drawn numbers and the gain/loss of
+ * each series, grow with the number of series and are kept only for small
+ * runs.
+ *
+ * @author D. Campione
+ *
+ */
+public class SimulationResult {
+
+    private final List<Bet> bets;
+    private final int betUnit;
+    private final int attemptLimit;
+    private final SeriesStatistics statistics;
+    private final String[] rowOutcomes;
+    private final int[] extractedNumbers;
+    private final int[] seriesProfits;
+
+    SimulationResult(List<Bet> bets, int betUnit, int attemptLimit, SeriesStatistics statistics,
+            String[] rowOutcomes, int[] extractedNumbers, int[] seriesProfits) {
+        this.bets = Collections.unmodifiableList(bets);
+        this.betUnit = betUnit;
+        this.attemptLimit = attemptLimit;
+        this.statistics = statistics;
+        this.rowOutcomes = rowOutcomes;
+        this.extractedNumbers = extractedNumbers;
+        this.seriesProfits = seriesProfits;
+    }
+
+    public List<Bet> getBets() {
+        return bets;
+    }
+
+    public int getRetryCount() {
+        return statistics.getRetryCount();
+    }
+
+    public long getSeriesCount() {
+        return statistics.getSeriesCount();
+    }
+
+    public int getBetUnit() {
+        return betUnit;
+    }
+
+    public int getAttemptLimit() {
+        return attemptLimit;
+    }
+
+    public SeriesStatistics getStatistics() {
+        return statistics;
+    }
+
+    public int getRowCount() {
+        return bets.size();
+    }
+
+    /**
+     * Returns true if the grid of the outcomes, the drawn numbers and the
+     * gain/loss of each series were kept.
+     */
+    public boolean hasDetails() {
+        return rowOutcomes != null;
+    }
+
+    /**
+     * Returns the outcomes of a row, one character per series: "." for a win,
+     * "X" for a loss and "=" for an ignored row.
+     *
+     * @throws IllegalStateException if the details were not kept
+     */
+    public String getRowOutcomes(int row) {
+        checkDetails();
+        return rowOutcomes[row];
+    }
+
+    /**
+     * Returns the drawn numbers in extraction order (series after series).
+     *
+     * @throws IllegalStateException if the details were not kept
+     */
+    public int[] getExtractedNumbers() {
+        checkDetails();
+        return extractedNumbers.clone();
+    }
+
+    public int getExtractedNumber(int index) {
+        checkDetails();
+        return extractedNumbers[index];
+    }
+
+    public int getExtractedNumberCount() {
+        return hasDetails() ? extractedNumbers.length : 0;
+    }
+
+    /**
+     * @throws IllegalStateException if the details were not kept
+     */
+    public int[] getSeriesProfits() {
+        checkDetails();
+        return seriesProfits.clone();
+    }
+
+    public int getSeriesProfit(int series) {
+        checkDetails();
+        return seriesProfits[series];
+    }
+
+    public long getTotalDots() {
+        return statistics.getTotalDots();
+    }
+
+    public double getAverageDots() {
+        return statistics.getAverageDots();
+    }
+
+    public boolean hasFailures() {
+        return statistics.hasFailures();
+    }
+
+    /**
+     * Returns the zero-based row of the first failure, or -1 if there were no
+     * failures.
+     */
+    public int getFirstFailureRow() {
+        return statistics.getFirstFailureRow();
+    }
+
+    /**
+     * Returns the zero-based series of the first failure, or -1 if there were no
+     * failures.
+     */
+    public long getFirstFailureSeries() {
+        return statistics.getFirstFailureSeries();
+    }
+
+    public long getTotalProfitLoss() {
+        return statistics.getTotalProfitLoss();
+    }
+
+    /**
+     * Returns the gain/loss up to the attempt limit. Meaningful only when the
+     * attempt limit is not 0.
+     */
+    public long getLimitedProfitLoss() {
+        return statistics.getLimitedProfitLoss();
+    }
+
+    private void checkDetails() {
+        if (!hasDetails()) {
+            throw new IllegalStateException("The details of the run were not kept");
+        }
+    }
+}
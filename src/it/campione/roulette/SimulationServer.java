@@ -0,0 +1,312 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local HTTP service running the simulation on a
+ * {@link ParallelSimulationEngine}. Every request is handled on its own
+ * virtual thread on Java 21 or later, and on a pooled platform thread before:
+ *
+ * <pre>
+ * POST /simulate?retry=1&amp;series=100000&amp;bet=35&amp;attemptLimit=0&amp;seed=42
+ *      (body: the series, in the format of "serie.txt")
+ * GET  /status
+ * GET  /metrics
+ * </pre>
+ *
+ * The answer of /simulate is the JSON of {@link StatisticsFormat}; a missing
+ * seed is drawn at random and returned. At most a fixed number of simulations
+ * run at once; a request waits for its turn within its timeout, which also
+ * cancels the simulation, and the size of the series and the number of series
+ * of a request are capped, so the memory used stays bounded whatever the
+ * number of clients. Repeated requests of a seeded run are answered from a
+ * {@link ResultCache}, without taking a slot.
+ *
+ * @author D. Campione
+ *
+ */
+public class SimulationServer implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+    public static final long DEFAULT_MAX_SERIES = 100_000_000;
+
+    /** Largest accepted series layout, in bytes. */
+    static final int MAX_BODY_SIZE = 1 << 20;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ParallelSimulationEngine engine;
+    private final ResultCache cache;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final long timeoutNanos;
+    private final long maxSeries;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    /**
+     * Creates a server on the given address; {@link #start()} starts it.
+     *
+     * @param address       the address to listen on (port 0 = any free port)
+     * @param engine        the engine of the simulations, not closed by the
+     *                      server
+     * @param maxInFlight   the most simulations running at once
+     * @param timeoutMillis the time limit of a request, waiting included
+     * @param maxSeries     the most series of a request
+     * @param cache         the cache of the results, or null not to cache them
+     */
+    public SimulationServer(InetSocketAddress address, ParallelSimulationEngine engine, int maxInFlight,
+            long timeoutMillis, long maxSeries, ResultCache cache) throws IOException {
+        if (maxInFlight < 1 || timeoutMillis < 1 || maxSeries < 1) {
+            throw new IllegalArgumentException("The limits of the server must be positive");
+        }
+        this.engine = engine;
+        this.cache = cache;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight, true);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.maxSeries = maxSeries;
+        this.executor = newRequestExecutor();
+        this.server = HttpServer.create(address, 1024);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Returns an executor of a virtual thread per task when the runtime has
+     * them, looked up by reflection so that the class also builds on Java 17,
+     * and a pool of platform threads otherwise.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.createContext("/simulate", this::simulate);
+        server.createContext("/status", this::status);
+        server.createContext("/metrics", this::metrics);
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getCompletedRequests() {
+        return completed.get();
+    }
+
+    public long getRejectedRequests() {
+        return rejected.get();
+    }
+
+    public long getTimedOutRequests() {
+        return timedOut.get();
+    }
+
+    public int getInFlightRequests() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    private void simulate(HttpExchange exchange) throws IOException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                send(exchange, 405, error("Use POST"));
+                return;
+            }
+            SimulationParameters parameters;
+            try {
+                parameters = parseParameters(exchange);
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, error(e.getMessage()));
+                return;
+            }
+            if (parameters == null) {
+                send(exchange, 413, error("Series layout over " + MAX_BODY_SIZE + " bytes"));
+                return;
+            }
+
+            SeriesStatistics statistics;
+            if (cache != null) {
+                statistics = cache.get(parameters, engine.getRandomAlgorithm(), p -> runLimited(p, deadline));
+            } else {
+                statistics = runLimited(parameters, deadline);
+            }
+            completed.incrementAndGet();
+            send(exchange, 200, StatisticsFormat.toJson(parameters, statistics));
+        } catch (CancellationException e) {
+            timedOut.incrementAndGet();
+            send(exchange, 504, error("Timed out"));
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            send(exchange, 503, error(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Runs the simulation as soon as there is room for it before the deadline.
+     *
+     * @throws RejectedExecutionException if there is no room in time
+     * @throws CancellationException      if the deadline passes while running
+     */
+    private SeriesStatistics runLimited(SimulationParameters parameters, long deadline) {
+        try {
+            if (!inFlight.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                throw new RejectedExecutionException("Too many simulations in progress");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Server stopping");
+        }
+        try {
+            return engine.run(parameters, new SimulationMonitor() {
+
+                @Override
+                public void seriesCompleted(long completedSeries, long totalSeries, long totalProfitLoss) {
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return System.nanoTime() - deadline > 0;
+                }
+            });
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private void status(HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder json = new StringBuilder("{");
+            json.append("\"inFlight\":").append(getInFlightRequests());
+            json.append(",\"maxInFlight\":").append(maxInFlight);
+            json.append(",\"completed\":").append(completed.get());
+            json.append(",\"rejected\":").append(rejected.get());
+            json.append(",\"timedOut\":").append(timedOut.get());
+            if (cache != null) {
+                json.append(",\"cache\":{\"entries\":").append(cache.size());
+                json.append(",\"bytes\":").append(cache.getBytes());
+                json.append(",\"maxBytes\":").append(cache.getMaxBytes());
+                json.append(",\"hits\":").append(cache.getHits());
+                json.append(",\"misses\":").append(cache.getMisses());
+                json.append(",\"evictions\":").append(cache.getEvictions()).append('}');
+            }
+            send(exchange, 200, json.append('}').toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        try {
+            byte[] bytes = SimulationMetrics.getDefault().dump().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads the parameters of a request, or returns null when its series is
+     * too large.
+     */
+    private SimulationParameters parseParameters(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream input = exchange.getRequestBody()) {
+            body = input.readNBytes(MAX_BODY_SIZE + 1);
+        }
+        if (body.length > MAX_BODY_SIZE) {
+            return null;
+        }
+        String layout = new String(body, StandardCharsets.UTF_8).trim();
+        if (layout.isEmpty()) {
+            throw new IllegalArgumentException("Missing series layout");
+        }
+        List<Bet> bets = SeriesFile.parse(layout);
+
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int retryCount = CommandLineRunner.intOption(query, "retry", 0);
+        long seriesCount = CommandLineRunner.longOption(query, "series", 1);
+        int betAmount = CommandLineRunner.intOption(query, "bet", SimulationEngine.COVERED_NUMBERS);
+        int attemptLimit = CommandLineRunner.intOption(query, "attemptLimit", 0);
+        long seed = query.containsKey("seed") ? CommandLineRunner.longOption(query, "seed", 0)
+                : ThreadLocalRandom.current().nextLong();
+        if (seriesCount > maxSeries) {
+            throw new IllegalArgumentException("At most " + maxSeries + " series per request");
+        }
+        return new SimulationParameters(bets, retryCount, seriesCount, CommandLineRunner.betUnit(betAmount),
+                attemptLimit, seed);
+    }
+
+    static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Stops accepting requests, gives the running ones a second to complete
+     * and stops the server.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,103 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of a binary log of recorded spins (see {@link BinaryFormat}).
+ * The file is mapped in segments of up to 1 GiB, so that logs of any size are
+ * read in place, without copying them to the heap.
+ *
+ * @author D. Campione
+ *
+ */
+public class SpinLog implements AutoCloseable {
+
+    static final int SEGMENT_BITS = 30;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    private SpinLog(Path path, FileChannel channel, long size) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+        this.segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; i++) {
+            long position = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, BinaryFormat.HEADER_SIZE + position,
+                    Math.min(SEGMENT_SIZE, size - position));
+        }
+    }
+
+    public static SpinLog open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new SpinLog(path, channel, BinaryFormat.checkHeader(channel, BinaryFormat.SPINS, 1));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of recorded spins.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the spin at the given position.
+     */
+    public int get(long position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Spin " + position + " of " + size);
+        }
+        return check(segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & (SEGMENT_SIZE - 1))) & 0xFF,
+                position);
+    }
+
+    /**
+     * Copies the spins from the given position into {@code out[from..to)}, or
+     * fewer at the end of the log.
+     *
+     * @return how many spins were copied, -1 at the end of the log
+     */
+    public int read(long position, int[] out, int from, int to) {
+        if (position >= size) {
+            return -1;
+        }
+        int count = (int) Math.min(to - from, size - position);
+        int copied = 0;
+        while (copied < count) {
+            long current = position + copied;
+            MappedByteBuffer segment = segments[(int) (current >>> SEGMENT_BITS)];
+            int offset = (int) (current & (SEGMENT_SIZE - 1));
+            int length = Math.min(count - copied, segment.limit() - offset);
+            for (int j = 0; j < length; j++) {
+                out[from + copied + j] = check(segment.get(offset + j) & 0xFF, current + j);
+            }
+            copied += length;
+        }
+        return count;
+    }
+
+    private int check(int number, long position) {
+        if (number >= CompiledSeries.POCKETS) {
+            throw new IllegalStateException("Invalid spin " + (position + 1) + " in " + path + ": " + number);
+        }
+        return number;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
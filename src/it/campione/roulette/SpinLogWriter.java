@@ -0,0 +1,70 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a binary log of spins (see {@link BinaryFormat}) one spin at a time.
+ * The count in the header is written on {@link #close()}.
+ *
+ * @author D. Campione
+ *
+ */
+public class SpinLogWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private long count;
+
+    public SpinLogWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        BinaryFormat.putHeader(buffer, BinaryFormat.SPINS, 0);
+    }
+
+    public void write(int number) throws IOException {
+        buffer.put((byte) BinaryFormat.checkNumber(number));
+        count++;
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+    }
+
+    public void write(int[] numbers, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            write(numbers[i]);
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(BinaryFormat.HEADER_SIZE);
+            BinaryFormat.putHeader(header, BinaryFormat.SPINS, count);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
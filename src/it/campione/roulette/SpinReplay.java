@@ -0,0 +1,114 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Back-tests a series on recorded spins: the series are played one after the
+ * other on consecutive spins of a {@link SpinSource}, one spin per row as in
+ * the application, so any amount of history is replayed in constant memory.
+ * A last incomplete series is not played.
+ *
+ * @author D. Campione
+ *
+ */
+public class SpinReplay {
+
+    /** Series read from the source at a time. */
+    private static final int BATCH_SERIES = 1024;
+
+    /** Series played between two calls to the monitor. */
+    private static final int PROGRESS_INTERVAL = 1 << 12;
+
+    private SpinReplay() {
+    }
+
+    /**
+     * Replays the series on the spins of the source.
+     *
+     * @param spins        the recorded spins
+     * @param bets         the rows of excluded couples
+     * @param retryCount   how many losses are retried before the game stops
+     * @param betUnit      the amount bet on every covered number
+     * @param seriesCount  the most series to play, {@link Long#MAX_VALUE} to
+     *                     play all the spins
+     * @param attemptLimit the attempt up to which the gain/loss is summed (0 =
+     *                     no limit); it requires the number of series to be
+     *                     known, either given or from the size of the source
+     * @param monitor      the monitor of the progress, whose total is the
+     *                     number of series when known and -1 otherwise
+     * @return the statistics of the series played
+     */
+    public static SeriesStatistics run(SpinSource spins, List<Bet> bets, int retryCount, int betUnit,
+            long seriesCount, int attemptLimit, SimulationMonitor monitor) throws IOException {
+        CompiledSeries series = CompiledSeries.compile(bets);
+        int rowCount = series.getRowCount();
+        if (rowCount == 0) {
+            throw new IllegalArgumentException("The series has no rows");
+        }
+        if (retryCount < 0 || seriesCount < 0 || betUnit < 0 || attemptLimit < 0) {
+            throw new IllegalArgumentException("Negative simulation parameter");
+        }
+        long totalSeries = seriesCount;
+        if (spins.remaining() >= 0) {
+            totalSeries = Math.min(seriesCount, spins.remaining() / rowCount);
+        }
+        if (attemptLimit != 0 && totalSeries == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("The attempt limit needs the number of series");
+        }
+
+        SimulationMetrics metrics = SimulationMetrics.getDefault();
+        long start = metrics.getSimulationTimer().start();
+        long allocated = SimulationMetrics.threadAllocatedBytes();
+        SeriesStatistics statistics = new SeriesStatistics(rowCount, retryCount);
+        SeriesPlayer player = new SeriesPlayer(series, retryCount, betUnit);
+        int[] numbers = new int[rowCount * BATCH_SERIES];
+        long index = 0;
+        while (index < totalSeries) {
+            int batch = (int) Math.min(BATCH_SERIES, totalSeries - index);
+            int played = fill(spins, numbers, batch * rowCount) / rowCount;
+            for (int i = 0; i < played; i++, index++) {
+                player.play(numbers, i * rowCount);
+                int limitedProfit = index < attemptLimit ? player.getLimitedProfit(index, totalSeries, attemptLimit)
+                        : 0;
+                statistics.addSeries(index, player.getProfit(), player.getDots(), player.getLosses(),
+                        player.getFirstFailureRow(), limitedProfit);
+                // No control variate: the recorded wheel is not assumed to be fair
+                statistics.addSample(player.getProfit(), player.getDots(), 0);
+                if ((index + 1) % PROGRESS_INTERVAL == 0) {
+                    if (monitor.isCancelled()) {
+                        throw new CancellationException("Replay cancelled");
+                    }
+                    monitor.seriesCompleted(index + 1, totalSeries == Long.MAX_VALUE ? -1 : totalSeries,
+                            statistics.getTotalProfitLoss());
+                }
+            }
+            if (played < batch) {
+                break; // End of the spins
+            }
+        }
+        monitor.seriesCompleted(index, totalSeries == Long.MAX_VALUE ? -1 : totalSeries,
+                statistics.getTotalProfitLoss());
+        metrics.allocatedSince(allocated, index);
+        metrics.getSimulationTimer().stop(start);
+        metrics.seriesPlayed(index, index * rowCount);
+        return statistics;
+    }
+
+    /**
+     * Reads spins until the given count or the end of the source, and returns
+     * how many were read.
+     */
+    private static int fill(SpinSource spins, int[] numbers, int count) throws IOException {
+        int filled = 0;
+        while (filled < count) {
+            int read = spins.read(numbers, filled, count);
+            if (read < 0) {
+                break;
+            }
+            filled += read;
+        }
+        return filled;
+    }
+}
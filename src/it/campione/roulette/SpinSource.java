@@ -0,0 +1,61 @@
+package it.campione.roulette;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Stream of recorded wheel spins, used by {@link SpinReplay} to play the
+ * series on real history instead of on the {@link Roulette}. A source must be
+ * used by a single thread.
+ *
+ * @author D. Campione
+ *
+ */
+public interface SpinSource extends AutoCloseable {
+
+    /** Blocks of spins read ahead by default from a text file. */
+    int DEFAULT_READ_AHEAD = 8;
+
+    /**
+     * Copies the next spins into {@code out[from..to)}, or fewer when fewer are
+     * available at the moment.
+     *
+     * @return how many spins were copied, -1 at the end of the stream
+     */
+    int read(int[] out, int from, int to) throws IOException;
+
+    /**
+     * Returns how many spins are left, or -1 when it is not known in advance.
+     */
+    default long remaining() {
+        return -1;
+    }
+
+    @Override
+    void close() throws IOException;
+
+    /**
+     * Opens a spin log in the {@link BinaryFormat}, read in place, a text
+     * file of spins (see {@link BinaryConverter}), parsed by a background
+     * thread with a bounded read-ahead, or the directory of a journal (see
+     * {@link JournalWriter}).
+     */
+    static SpinSource open(Path path) throws IOException {
+        return open(path, DEFAULT_READ_AHEAD);
+    }
+
+    /**
+     * Opens a spin file keeping at most the given blocks of a text file in
+     * memory.
+     */
+    static SpinSource open(Path path, int readAhead) throws IOException {
+        if (Files.isDirectory(path)) {
+            return new JournalSpinSource(new JournalReader(path));
+        }
+        if (BinaryFormat.isBinary(path)) {
+            return new LogSpinSource(SpinLog.open(path));
+        }
+        return new TextSpinSource(path, readAhead);
+    }
+}
@@ -0,0 +1,164 @@
+package it.campione.roulette;
+
+/**
+ * Machine-readable forms (CSV and JSON) of the statistics of a run, and of
+ * the {@link BankrollStatistics} of a bankroll run. Rows and series of the
+ * first failure are one-based, as in the textual report, and are empty (CSV)
+ * or null (JSON) when there were no failures. The confidence intervals are
+ * given as the half-width of the 95% interval around the mean, plain and
+ * corrected with the control variate.
+ *
+ * @author D. Campione
+ *
+ */
+public class StatisticsFormat {
+
+    public static final String CSV_HEADER = "series,retry,bet,attempt_limit,seed,total_profit_loss,mean_profit_loss,"
+            + "standard_deviation,min_profit_loss,max_profit_loss,average_points,series_with_failures,stopped_series,"
+            + "first_failure_row,first_failure_series,max_drawdown,limited_profit_loss,"
+            + "mean_profit_loss_ci,controlled_mean_profit_loss,controlled_mean_profit_loss_ci,average_points_ci,"
+            + "controlled_average_points,controlled_average_points_ci";
+
+    public static final String BANKROLL_CSV_HEADER = "trials,max_series,retry,bet,seed,bankroll,target_profit,ruined,"
+            + "target_reached,given_up,expired,ruin_probability,mean_ruin_spins,ruin_spins_standard_deviation,"
+            + "min_ruin_spins,max_ruin_spins,mean_target_spins,mean_final_profit_loss,spins";
+
+    private StatisticsFormat() {
+    }
+
+    public static String toCsv(SimulationParameters parameters, SeriesStatistics statistics) {
+        StringBuilder csv = new StringBuilder();
+        csv.append(statistics.getSeriesCount()).append(',');
+        csv.append(parameters.getRetryCount()).append(',');
+        csv.append(parameters.getBetAmount()).append(',');
+        csv.append(parameters.getAttemptLimit()).append(',');
+        csv.append(parameters.getSeed()).append(',');
+        csv.append(statistics.getTotalProfitLoss()).append(',');
+        csv.append(statistics.getMeanProfit()).append(',');
+        csv.append(statistics.getProfitStandardDeviation()).append(',');
+        csv.append(statistics.getMinProfit()).append(',');
+        csv.append(statistics.getMaxProfit()).append(',');
+        csv.append(statistics.getAverageDots()).append(',');
+        csv.append(statistics.getSeriesWithFailures()).append(',');
+        csv.append(statistics.getStoppedSeries()).append(',');
+        if (statistics.hasFailures()) {
+            csv.append(statistics.getFirstFailureRow() + 1).append(',');
+            csv.append(statistics.getFirstFailureSeries() + 1).append(',');
+        } else {
+            csv.append(",,");
+        }
+        csv.append(statistics.getMaxDrawdown()).append(',');
+        csv.append(parameters.getAttemptLimit() != 0 ? String.valueOf(statistics.getLimitedProfitLoss()) : "");
+        MeanEstimate profit = statistics.getProfitEstimate();
+        MeanEstimate dots = statistics.getDotsEstimate();
+        csv.append(',').append(profit.getHalfWidth());
+        csv.append(',').append(profit.getControlledMean());
+        csv.append(',').append(profit.getControlledHalfWidth());
+        csv.append(',').append(dots.getHalfWidth());
+        csv.append(',').append(dots.getControlledMean());
+        csv.append(',').append(dots.getControlledHalfWidth());
+        return csv.toString();
+    }
+
+    public static String toJson(SimulationParameters parameters, SeriesStatistics statistics) {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"series\":").append(statistics.getSeriesCount());
+        json.append(",\"retry\":").append(parameters.getRetryCount());
+        json.append(",\"bet\":").append(parameters.getBetAmount());
+        json.append(",\"attemptLimit\":").append(parameters.getAttemptLimit());
+        json.append(",\"seed\":").append(parameters.getSeed());
+        json.append(",\"totalProfitLoss\":").append(statistics.getTotalProfitLoss());
+        json.append(",\"meanProfitLoss\":").append(statistics.getMeanProfit());
+        json.append(",\"standardDeviation\":").append(statistics.getProfitStandardDeviation());
+        json.append(",\"minProfitLoss\":").append(statistics.getMinProfit());
+        json.append(",\"maxProfitLoss\":").append(statistics.getMaxProfit());
+        json.append(",\"averagePoints\":").append(statistics.getAverageDots());
+        json.append(",\"seriesWithFailures\":").append(statistics.getSeriesWithFailures());
+        json.append(",\"stoppedSeries\":").append(statistics.getStoppedSeries());
+        json.append(",\"firstFailureRow\":")
+                .append(statistics.hasFailures() ? String.valueOf(statistics.getFirstFailureRow() + 1) : null);
+        json.append(",\"firstFailureSeries\":")
+                .append(statistics.hasFailures() ? String.valueOf(statistics.getFirstFailureSeries() + 1) : null);
+        json.append(",\"maxDrawdown\":").append(statistics.getMaxDrawdown());
+        json.append(",\"limitedProfitLoss\":")
+                .append(parameters.getAttemptLimit() != 0 ? String.valueOf(statistics.getLimitedProfitLoss()) : null);
+        MeanEstimate profit = statistics.getProfitEstimate();
+        MeanEstimate dots = statistics.getDotsEstimate();
+        json.append(",\"meanProfitLossCi\":").append(profit.getHalfWidth());
+        json.append(",\"controlledMeanProfitLoss\":").append(profit.getControlledMean());
+        json.append(",\"controlledMeanProfitLossCi\":").append(profit.getControlledHalfWidth());
+        json.append(",\"averagePointsCi\":").append(dots.getHalfWidth());
+        json.append(",\"controlledAveragePoints\":").append(dots.getControlledMean());
+        json.append(",\"controlledAveragePointsCi\":").append(dots.getControlledHalfWidth());
+        json.append(",\"firstFailureHistogram\":[");
+        for (int i = 0; i < statistics.getRowCount(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(statistics.getFirstFailureCount(i));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    public static String toCsv(SimulationParameters parameters, BankrollStatistics statistics) {
+        StringBuilder csv = new StringBuilder();
+        csv.append(statistics.getTrials()).append(',');
+        csv.append(statistics.getMaxSeries()).append(',');
+        csv.append(parameters.getRetryCount()).append(',');
+        csv.append(parameters.getBetAmount()).append(',');
+        csv.append(parameters.getSeed()).append(',');
+        csv.append(statistics.getBankroll()).append(',');
+        csv.append(statistics.getTargetProfit()).append(',');
+        csv.append(statistics.getRuinedTrials()).append(',');
+        csv.append(statistics.getTargetTrials()).append(',');
+        csv.append(statistics.getGivenUpTrials()).append(',');
+        csv.append(statistics.getExpiredTrials()).append(',');
+        csv.append(statistics.getRuinProbability()).append(',');
+        csv.append(statistics.getMeanRuinSpins()).append(',');
+        csv.append(statistics.getRuinSpinsStandardDeviation()).append(',');
+        csv.append(statistics.getMinRuinSpins()).append(',');
+        csv.append(statistics.getMaxRuinSpins()).append(',');
+        csv.append(statistics.getMeanTargetSpins()).append(',');
+        csv.append(statistics.getMeanFinalProfit()).append(',');
+        csv.append(statistics.getTotalSpins());
+        return csv.toString();
+    }
+
+    public static String toJson(SimulationParameters parameters, BankrollStatistics statistics) {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"trials\":").append(statistics.getTrials());
+        json.append(",\"maxSeries\":").append(statistics.getMaxSeries());
+        json.append(",\"retry\":").append(parameters.getRetryCount());
+        json.append(",\"bet\":").append(parameters.getBetAmount());
+        json.append(",\"seed\":").append(parameters.getSeed());
+        json.append(",\"bankroll\":").append(statistics.getBankroll());
+        json.append(",\"targetProfit\":").append(statistics.getTargetProfit());
+        json.append(",\"ruined\":").append(statistics.getRuinedTrials());
+        json.append(",\"targetReached\":").append(statistics.getTargetTrials());
+        json.append(",\"givenUp\":").append(statistics.getGivenUpTrials());
+        json.append(",\"expired\":").append(statistics.getExpiredTrials());
+        json.append(",\"ruinProbability\":").append(statistics.getRuinProbability());
+        json.append(",\"meanRuinSpins\":").append(statistics.getMeanRuinSpins());
+        json.append(",\"ruinSpinsStandardDeviation\":").append(statistics.getRuinSpinsStandardDeviation());
+        json.append(",\"minRuinSpins\":").append(statistics.getMinRuinSpins());
+        json.append(",\"maxRuinSpins\":").append(statistics.getMaxRuinSpins());
+        json.append(",\"meanTargetSpins\":").append(statistics.getMeanTargetSpins());
+        json.append(",\"meanFinalProfitLoss\":").append(statistics.getMeanFinalProfit());
+        json.append(",\"spins\":").append(statistics.getTotalSpins());
+        // Bucket k counts the ruins after [2^k, 2^(k+1)) spins, up to the last non-empty one
+        int buckets = BankrollStatistics.RUIN_TIME_BUCKETS;
+        while (buckets > 0 && statistics.getRuinCount(buckets - 1) == 0) {
+            buckets--;
+        }
+        json.append(",\"ruinHistogram\":[");
+        for (int i = 0; i < buckets; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(statistics.getRuinCount(i));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package it.campione.roulette;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link SpinSource} over a text file of spins: numbers separated by commas,
+ * semicolons or blanks, with an optional header line. A background thread
+ * parses the file in blocks and stays at most a fixed number of blocks ahead
+ * of the reader, so the memory used does not depend on the size of the file.
+ *
+ * @author D. Campione
+ *
+ */
+final class TextSpinSource implements SpinSource {
+
+    static final int BLOCK_SIZE = 1 << 14;
+
+    /** Marks the end of the file, or the failure of the parser. */
+    private static final int[] END = new int[0];
+
+    private final BufferedReader reader;
+    private final BlockingQueue<int[]> blocks;
+    private final Thread parser;
+    private volatile IOException failure;
+    private int[] block;
+    private int position;
+
+    TextSpinSource(Path path, int readAhead) throws IOException {
+        if (readAhead < 1) {
+            throw new IllegalArgumentException("The read-ahead must be at least 1");
+        }
+        this.reader = Files.newBufferedReader(path);
+        this.blocks = new ArrayBlockingQueue<>(readAhead);
+        this.parser = new Thread(this::parse, "spin-reader");
+        parser.setDaemon(true);
+        parser.start();
+    }
+
+    private void parse() {
+        try {
+            try {
+                int[] current = new int[BLOCK_SIZE];
+                int count = 0;
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    String text = line.trim();
+                    if (text.isEmpty() || (lineNumber == 1 && !Character.isDigit(text.charAt(0)))) {
+                        continue; // Blank line or header
+                    }
+                    for (String token : text.split("[,;\\s]+")) {
+                        int number;
+                        try {
+                            number = BinaryFormat.checkNumber(Integer.parseInt(token));
+                        } catch (IllegalArgumentException e) {
+                            throw new IOException("Invalid spin at line " + lineNumber + ": " + token);
+                        }
+                        current[count++] = number;
+                        if (count == BLOCK_SIZE) {
+                            blocks.put(current);
+                            current = new int[BLOCK_SIZE];
+                            count = 0;
+                        }
+                    }
+                }
+                if (count > 0) {
+                    blocks.put(Arrays.copyOf(current, count));
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            blocks.put(END);
+        } catch (InterruptedException e) {
+            // Closed by the reader
+        }
+    }
+
+    @Override
+    public int read(int[] out, int from, int to) throws IOException {
+        if (block == END) {
+            return -1;
+        }
+        if (block == null || position == block.length) {
+            try {
+                block = blocks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading the spins");
+            }
+            position = 0;
+            if (block == END) {
+                if (failure != null) {
+                    throw failure;
+                }
+                return -1;
+            }
+        }
+        int count = Math.min(to - from, block.length - position);
+        System.arraycopy(block, position, out, from, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.interrupt();
+        reader.close();
+    }
+}
@@ -0,0 +1,60 @@
+package it.campione.roulette;
+
+/**
+ * How the {@link ParallelSimulationEngine} draws the numbers of the series to
+ * make its estimates converge faster. The series are played in groups whose
+ * numbers are drawn together; every series still draws every row uniformly,
+ * so the means are unbiased, and the confidence intervals are computed on the
+ * means of the groups, which are independent. A run plays whole groups only:
+ * its series count is rounded up to a multiple of the group size, and the
+ * most series of a run to a precision rounded down.
+ *
+ * @author D. Campione
+ *
+ */
+public enum VarianceReduction {
+
+    /** Independent series, as in the application. */
+    NONE(1),
+
+    /**
+     * Series in pairs: the second draws 36 - n wherever the first drew n. The
+     * gain is marginal here, intervals about 1% narrower than with
+     * independent series, as a row loses on only 2 of the 37 numbers and the
+     * losses of the pair are hardly correlated.
+     */
+    ANTITHETIC(2),
+
+    /**
+     * Series in groups of 37: on every row the group draws each of the 37
+     * numbers once, in random order, so every row loses exactly as often as
+     * the couple predicts; the interval of the gain/loss is about 45%
+     * narrower than with independent series.
+     */
+    STRATIFIED(CompiledSeries.POCKETS);
+
+    private final int groupSize;
+
+    private VarianceReduction(int groupSize) {
+        this.groupSize = groupSize;
+    }
+
+    /**
+     * Returns the number of series whose numbers are drawn together.
+     */
+    public int getGroupSize() {
+        return groupSize;
+    }
+
+    /**
+     * Returns the technique with the given name, ignoring the case.
+     */
+    public static VarianceReduction fromName(String name) {
+        for (VarianceReduction technique : values()) {
+            if (technique.name().equalsIgnoreCase(name)) {
+                return technique;
+            }
+        }
+        throw new IllegalArgumentException("Unknown variance reduction: " + name);
+    }
+}
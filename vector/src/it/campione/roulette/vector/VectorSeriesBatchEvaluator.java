@@ -0,0 +1,102 @@
+package it.campione.roulette.vector;
+
+import it.campione.roulette.CompiledSeries;
+import it.campione.roulette.SeriesBatchEvaluator;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link SeriesBatchEvaluator} built on the Vector API: one lane per series,
+ * as many series at a time as the preferred vector of the CPU holds ints (8
+ * with AVX2, 16 with AVX-512, 4 with NEON). Every row is evaluated for all the
+ * lanes at once, on the numbers of the row transposed into one vector: the
+ * win test is a shift of the losing mask of the row by the drawn numbers, and
+ * the series whose retries are over stay in their lanes, masked out of the
+ * counts, so there are no branches on the outcomes.
+ * <p>
+ * It needs the jdk.incubator.vector module, both to build and to run:
+ *
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -cp roulette.jar -d vector-classes VectorSeriesBatchEvaluator.java
+ * java --add-modules jdk.incubator.vector -cp roulette.jar:vector-classes:resources ...
+ * </pre>
+ *
+ * @author D. Campione
+ *
+ */
+public class VectorSeriesBatchEvaluator extends SeriesBatchEvaluator {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    /** Numbers from which the losing mask of a row is taken from its high half. */
+    private static final int HIGH_NUMBERS = 32;
+
+    private final int[] lowMasks;
+    private final int[] highMasks;
+    /** The numbers drawn by the series of a vector, row by row. */
+    private final int[] laneSpins;
+
+    public VectorSeriesBatchEvaluator(CompiledSeries series, int retryCount, int capacity) {
+        super(series, retryCount, capacity);
+        this.lowMasks = new int[rowCount];
+        this.highMasks = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            long mask = series.getMask(i);
+            lowMasks[i] = (int) mask;
+            highMasks[i] = (int) (mask >>> HIGH_NUMBERS);
+        }
+        this.laneSpins = new int[rowCount * SPECIES.length()];
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    protected void evaluateSeries(int count) {
+        IntVector zero = IntVector.zero(SPECIES);
+        IntVector none = IntVector.broadcast(SPECIES, -1);
+        int lanes = SPECIES.length();
+        // The capacity is a multiple of the lanes, so the last vector is whole too
+        for (int s = 0; s < count; s += lanes) {
+            // Transposed in a buffer that stays in the L1 cache and loaded
+            // contiguously. A gather (fromArray with an index map) would avoid
+            // the copy, but the gather version of this loop crashed the JVM
+            // (SIGSEGV in C2-compiled code) in our runs on JDK 21.0.1 with
+            // AVX-512, while this one gives the scalar outcomes
+            for (int lane = 0, from = s * rowCount; lane < lanes; lane++) {
+                for (int i = 0, to = lane; i < rowCount; i++, to += lanes) {
+                    laneSpins[to] = spins[from++];
+                }
+            }
+            IntVector failures = zero;
+            IntVector wins = zero;
+            IntVector hitCount = zero;
+            IntVector firstFailure = none;
+            for (int i = 0; i < rowCount; i++) {
+                if (series.isIgnored(i)) {
+                    continue;
+                }
+                IntVector spin = IntVector.fromArray(SPECIES, laneSpins, i * lanes);
+                // Shift counts are taken modulo 32, so the numbers from 32 shift the high half
+                VectorMask<Integer> high = spin.compare(VectorOperators.GE, HIGH_NUMBERS);
+                VectorMask<Integer> hit = IntVector.broadcast(SPECIES, lowMasks[i])
+                        .blend(highMasks[i], high).lanewise(VectorOperators.LSHR, spin).and(1)
+                        .compare(VectorOperators.NE, 0);
+                hitCount = hitCount.add(1, hit);
+                VectorMask<Integer> playing = failures.compare(VectorOperators.LE, retryCount);
+                VectorMask<Integer> loss = playing.and(hit);
+                wins = wins.add(1, playing.andNot(hit));
+                firstFailure = firstFailure.blend(i, loss.and(firstFailure.compare(VectorOperators.EQ, -1)));
+                failures = failures.add(1, loss);
+            }
+            wins.intoArray(dots, s);
+            failures.intoArray(losses, s);
+            firstFailure.intoArray(firstFailureRows, s);
+            hitCount.intoArray(hits, s);
+        }
+    }
+}